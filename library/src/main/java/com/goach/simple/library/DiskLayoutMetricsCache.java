@@ -0,0 +1,414 @@
+package com.goach.simple.library;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.res.Configuration;
+import android.os.AsyncTask;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * author: Goach.zhong
+ * Date: 2026/10/19 23:50.
+ * Des:LayoutMetricsCache的磁盘缓存，进程被杀之后恢复的列表不用重新解析和两次measure。
+ * 文件在cache目录，按key排好序，通过mmap二分查找读取，不用整个读进内存。
+ * 文件头记录字体缩放、屏幕密度、语言、系统和应用版本，有变化的时候整个文件作废。
+ * 每条记录带着最后一次写入或者命中的flush序号，超出上限的时候保留最近用过的
+ */
+public class DiskLayoutMetricsCache {
+    private static final String TAG = DiskLayoutMetricsCache.class.getSimpleName();
+
+    private static final String FILE_NAME = "expandable_layout_metrics";
+
+    public static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    /* "ETLM" */
+    private static final int MAGIC = 0x45544c4d;
+
+    /* 2: the style hash covers the font, text locale and break strategy
+     * 3: entries carry the flush they were last used in */
+    private static final int VERSION = 3;
+
+    /* 24 bytes since version 3: magic(4), version(4), fingerprint(8), entry count(4), generation(4) */
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4;
+
+    /* 36 bytes since version 3: contentHash(8), width(4), styleHash(4), maxCollapsedLines(4),
+     * lineCount(4), fullHeight(4), collapsedHeight(4), lastUsed(4) */
+    private static final int ENTRY_SIZE = 8 + 4 + 4 + 4 + 4 + 4 + 4 + 4;
+
+    /* Puts are written in one go once the list has settled */
+    private static final long FLUSH_DELAY_MS = 2000;
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private static final Comparator<LayoutMetricsCache.Key> KEY_ORDER = new Comparator<LayoutMetricsCache.Key>() {
+        @Override
+        public int compare(LayoutMetricsCache.Key a, LayoutMetricsCache.Key b) {
+            return compareKey(a, b.contentHash, b.width, b.styleHash, b.maxCollapsedLines);
+        }
+    };
+
+    private final File mFile;
+    private final int mMaxEntries;
+    private long mFingerprint;
+
+    /* The mapped file, null if there is no valid file */
+    private ByteBuffer mBuffer;
+    private int mCount;
+    /* The number of flushes the file has been through, the lastUsed of the entries written by the last one */
+    private int mGeneration;
+
+    /* Puts not written to the file yet */
+    private final Map<LayoutMetricsCache.Key, LayoutMetrics> mPending = new HashMap<>();
+    /* Entries of the file read since the last flush, the next flush marks them as recently used */
+    private final Set<LayoutMetricsCache.Key> mHits = new HashSet<>();
+    private boolean mFlushScheduled;
+
+    /* Flushes share the temp file, so they run one at a time */
+    private final Object mFlushLock = new Object();
+
+    @VisibleForTesting
+    DiskLayoutMetricsCache(@NonNull File file, long fingerprint, int maxEntries) {
+        mFile = file;
+        mFingerprint = fingerprint;
+        mMaxEntries = maxEntries;
+        map();
+    }
+
+    /**
+     * Opens the cache in the app's cache dir and plugs it into {@link LayoutMetricsCache}, meant for
+     * Application#onCreate. Only the header is read here, the entries are paged in as they are looked up.
+     */
+    @NonNull
+    public static DiskLayoutMetricsCache install(@NonNull Context context) {
+        Context app = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        DiskLayoutMetricsCache cache = new DiskLayoutMetricsCache(new File(app.getCacheDir(), FILE_NAME),
+                fingerprint(app), DEFAULT_MAX_ENTRIES);
+        LayoutMetricsCache.setDiskCache(cache);
+        return cache;
+    }
+
+    /**
+     * Drops all entries if the font scale, density or locale changed, along with the ones of
+     * {@link LayoutMetricsCache} in memory. Call it from Application#onConfigurationChanged
+     */
+    public void onConfigurationChanged(@NonNull Context context) {
+        long fingerprint = fingerprint(context);
+        synchronized (this) {
+            if (fingerprint == mFingerprint) {
+                return;
+            }
+            mFingerprint = fingerprint;
+            mBuffer = null;
+            mCount = 0;
+            mPending.clear();
+            mHits.clear();
+        }
+        // the memory cache reads through to this one, so the two are cleared together
+        LayoutMetricsCache memory = LayoutMetricsCache.getInstance();
+        if (memory != null) {
+            memory.evictAll();
+        }
+    }
+
+    /**
+     * A hit from the file counts as a use, written with the next flush of puts, the hits alone
+     * don't rewrite the file
+     *
+     * @return the metrics from the file or the puts not written yet, null if not found
+     */
+    @Nullable
+    public synchronized LayoutMetrics get(@NonNull LayoutMetricsCache.Key key) {
+        LayoutMetrics pending = mPending.get(key);
+        if (pending != null) {
+            return pending;
+        }
+        int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        mHits.add(key);
+        return readMetrics(mBuffer, index, key);
+    }
+
+    /**
+     * Keeps the metrics to be written with the next flush, which happens shortly after the last put
+     */
+    public void put(@NonNull LayoutMetricsCache.Key key, @NonNull LayoutMetrics metrics) {
+        synchronized (this) {
+            mPending.put(key, metrics);
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Writes the pending puts, merged with the entries of the current file, to a temp file and
+     * renames it over the current one, so a reader never sees a half written file. Over the
+     * limit, the entries used longest ago are dropped.
+     */
+    @WorkerThread
+    public void flush() {
+        synchronized (mFlushLock) {
+            flushLocked();
+        }
+    }
+
+    private void flushLocked() {
+        Map<LayoutMetricsCache.Key, LayoutMetrics> pending;
+        Set<LayoutMetricsCache.Key> hits;
+        ByteBuffer buffer;
+        int count;
+        int generation;
+        long fingerprint;
+        synchronized (this) {
+            mFlushScheduled = false;
+            if (mPending.isEmpty()) {
+                return;
+            }
+            pending = new HashMap<>(mPending);
+            hits = new HashSet<>(mHits);
+            buffer = mBuffer;
+            count = mCount;
+            generation = mGeneration + 1;
+            fingerprint = mFingerprint;
+        }
+        final Map<LayoutMetricsCache.Key, Entry> entries = new HashMap<>();
+        for (Map.Entry<LayoutMetricsCache.Key, LayoutMetrics> put : pending.entrySet()) {
+            entries.put(put.getKey(), new Entry(put.getValue(), generation));
+        }
+        for (int i = 0; i < count; i++) {
+            LayoutMetricsCache.Key key = readKey(buffer, i);
+            if (!entries.containsKey(key)) {
+                int lastUsed = hits.contains(key) ? generation : buffer.getInt(HEADER_SIZE + i * ENTRY_SIZE + 32);
+                entries.put(key, new Entry(readMetrics(buffer, i, key), lastUsed));
+            }
+        }
+        List<LayoutMetricsCache.Key> keys = new ArrayList<>(entries.keySet());
+        if (keys.size() > mMaxEntries) {
+            // the most recently used are kept
+            Collections.sort(keys, new Comparator<LayoutMetricsCache.Key>() {
+                @Override
+                public int compare(LayoutMetricsCache.Key a, LayoutMetricsCache.Key b) {
+                    int lastUsedA = entries.get(a).mLastUsed;
+                    int lastUsedB = entries.get(b).mLastUsed;
+                    return lastUsedA == lastUsedB ? 0 : lastUsedA > lastUsedB ? -1 : 1;
+                }
+            });
+            keys = keys.subList(0, mMaxEntries);
+        }
+        Collections.sort(keys, KEY_ORDER);
+        File temp = new File(mFile.getPath() + ".tmp");
+        try {
+            write(temp, fingerprint, generation, keys, entries);
+            if (!temp.renameTo(mFile)) {
+                throw new IOException("Failed to rename " + temp);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write the layout metrics", e);
+            temp.delete();
+            return;
+        }
+        synchronized (this) {
+            if (fingerprint != mFingerprint) {
+                // the configuration changed while writing, the file is rewritten by the next flush
+                return;
+            }
+            map();
+            mHits.removeAll(hits);
+            for (Map.Entry<LayoutMetricsCache.Key, LayoutMetrics> entry : pending.entrySet()) {
+                // a put of the same key during the write stays pending
+                if (mPending.get(entry.getKey()) == entry.getValue()) {
+                    mPending.remove(entry.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of entries in the file
+     */
+    public synchronized int getCount() {
+        return mCount;
+    }
+
+    private void scheduleFlush() {
+        synchronized (this) {
+            if (mFlushScheduled) {
+                return;
+            }
+            mFlushScheduled = true;
+        }
+        sMainHandler.postDelayed(mFlushRunnable, FLUSH_DELAY_MS);
+    }
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            AsyncTask.SERIAL_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            });
+        }
+    };
+
+    private static void write(File file, long fingerprint, int generation, List<LayoutMetricsCache.Key> keys,
+                              Map<LayoutMetricsCache.Key, Entry> entries) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fingerprint);
+            out.writeInt(keys.size());
+            out.writeInt(generation);
+            for (LayoutMetricsCache.Key key : keys) {
+                Entry entry = entries.get(key);
+                out.writeLong(key.contentHash);
+                out.writeInt(key.width);
+                out.writeInt(key.styleHash);
+                out.writeInt(key.maxCollapsedLines);
+                out.writeInt(entry.mMetrics.getLineCount());
+                out.writeInt(entry.mMetrics.getFullHeight());
+                out.writeInt(entry.mMetrics.getCollapsedHeight());
+                out.writeInt(entry.mLastUsed);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Maps the file, a file of another format or configuration is left to be overwritten
+     */
+    private void map() {
+        mBuffer = null;
+        mCount = 0;
+        if (!mFile.exists() || mFile.length() < HEADER_SIZE) {
+            return;
+        }
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(mFile, "r");
+            FileChannel channel = file.getChannel();
+            // the mapping stays valid after the channel is closed
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int count = buffer.getInt(16);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getLong(8) != mFingerprint
+                    || count < 0 || buffer.capacity() != HEADER_SIZE + (long) count * ENTRY_SIZE) {
+                return;
+            }
+            mBuffer = buffer;
+            mCount = count;
+            mGeneration = buffer.getInt(20);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to map the layout metrics", e);
+        } finally {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private int indexOf(LayoutMetricsCache.Key key) {
+        int low = 0;
+        int high = mCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int offset = HEADER_SIZE + mid * ENTRY_SIZE;
+            int result = compareKey(key, mBuffer.getLong(offset), mBuffer.getInt(offset + 8),
+                    mBuffer.getInt(offset + 12), mBuffer.getInt(offset + 16));
+            if (result > 0) {
+                low = mid + 1;
+            } else if (result < 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private static LayoutMetrics readMetrics(ByteBuffer buffer, int index, LayoutMetricsCache.Key key) {
+        int offset = HEADER_SIZE + index * ENTRY_SIZE + 20;
+        return new LayoutMetrics(buffer.getInt(offset), buffer.getInt(offset + 4),
+                buffer.getInt(offset + 8), key.maxCollapsedLines);
+    }
+
+    private static LayoutMetricsCache.Key readKey(ByteBuffer buffer, int index) {
+        int offset = HEADER_SIZE + index * ENTRY_SIZE;
+        return new LayoutMetricsCache.Key(buffer.getLong(offset), buffer.getInt(offset + 8),
+                buffer.getInt(offset + 12), buffer.getInt(offset + 16));
+    }
+
+    private static int compareKey(LayoutMetricsCache.Key key, long contentHash, int width, int styleHash,
+                                  int maxCollapsedLines) {
+        if (key.contentHash != contentHash) {
+            return key.contentHash < contentHash ? -1 : 1;
+        }
+        if (key.width != width) {
+            return key.width < width ? -1 : 1;
+        }
+        if (key.styleHash != styleHash) {
+            return key.styleHash < styleHash ? -1 : 1;
+        }
+        if (key.maxCollapsedLines != maxCollapsedLines) {
+            return key.maxCollapsedLines < maxCollapsedLines ? -1 : 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Everything outside the keys that changes the layout of the same text in the same style
+     */
+    private static long fingerprint(Context context) {
+        Configuration config = context.getResources().getConfiguration();
+        long hash = Float.floatToIntBits(config.fontScale);
+        hash = 31 * hash + context.getResources().getDisplayMetrics().densityDpi;
+        hash = 31 * hash + (config.locale == null ? 0 : config.locale.toString().hashCode());
+        hash = 31 * hash + Build.FINGERPRINT.hashCode();
+        try {
+            // an app update may change its fonts
+            hash = 31 * hash + context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException ignored) {
+        }
+        return hash;
+    }
+
+    private static final class Entry {
+        final LayoutMetrics mMetrics;
+        /* The generation of the flush that last wrote or saw a hit of the entry */
+        final int mLastUsed;
+
+        Entry(LayoutMetrics metrics, int lastUsed) {
+            mMetrics = metrics;
+            mLastUsed = lastUsed;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.goach.simple.library;
+
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * author: Goach.zhong
+ * Date: 2026/10/18 17:30.
+ * Des:按照item的stable id保存展开状态，列表插入删除不会错乱。
+ * 只保存展开的id，用开放寻址的long哈希表实现，不需要装箱
+ */
+public class ExpandStateStore {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /* 0 marks an empty slot, the id 0 itself is kept in mHasZero */
+    private static final long EMPTY = 0L;
+
+    private long[] mKeys;
+    private int mMask;
+    private int mSize;
+    private boolean mHasZero;
+
+    public ExpandStateStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ExpandStateStore(int initialCapacity) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity < initialCapacity * 2) {
+            capacity <<= 1;
+        }
+        mKeys = new long[capacity];
+        mMask = capacity - 1;
+    }
+
+    public boolean isExpanded(long id) {
+        if (id == EMPTY) {
+            return mHasZero;
+        }
+        int index = indexOf(id);
+        return mKeys[index] == id;
+    }
+
+    public void setExpanded(long id, boolean expanded) {
+        if (expanded) {
+            add(id);
+        } else {
+            remove(id);
+        }
+    }
+
+    /**
+     * @return the number of expanded ids
+     */
+    public int size() {
+        return mHasZero ? mSize + 1 : mSize;
+    }
+
+    public void clear() {
+        Arrays.fill(mKeys, EMPTY);
+        mSize = 0;
+        mHasZero = false;
+    }
+
+    /**
+     * @return the expanded ids, in no particular order
+     */
+    @NonNull
+    public long[] getExpandedIds() {
+        long[] ids = new long[size()];
+        int i = 0;
+        if (mHasZero) {
+            ids[i++] = EMPTY;
+        }
+        for (long key : mKeys) {
+            if (key != EMPTY) {
+                ids[i++] = key;
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Saves the expanded ids, e.g. from Activity#onSaveInstanceState
+     */
+    public void saveState(@NonNull Bundle outState, @NonNull String key) {
+        outState.putLongArray(key, getExpandedIds());
+    }
+
+    public void restoreState(@Nullable Bundle savedState, @NonNull String key) {
+        clear();
+        long[] ids = savedState == null ? null : savedState.getLongArray(key);
+        if (ids == null) {
+            return;
+        }
+        for (long id : ids) {
+            add(id);
+        }
+    }
+
+    private void add(long id) {
+        if (id == EMPTY) {
+            mHasZero = true;
+            return;
+        }
+        int index = indexOf(id);
+        if (mKeys[index] == id) {
+            return;
+        }
+        mKeys[index] = id;
+        if (++mSize * 2 > mKeys.length) {
+            rehash(mKeys.length << 1);
+        }
+    }
+
+    private void remove(long id) {
+        if (id == EMPTY) {
+            mHasZero = false;
+            return;
+        }
+        int index = indexOf(id);
+        if (mKeys[index] != id) {
+            return;
+        }
+        mKeys[index] = EMPTY;
+        mSize--;
+        // shift back the following entries of the probe sequence, so lookups don't stop early
+        int next = (index + 1) & mMask;
+        while (mKeys[next] != EMPTY) {
+            long key = mKeys[next];
+            int slot = hash(key) & mMask;
+            if (((next - slot) & mMask) >= ((next - index) & mMask)) {
+                mKeys[index] = key;
+                mKeys[next] = EMPTY;
+                index = next;
+            }
+            next = (next + 1) & mMask;
+        }
+    }
+
+    /**
+     * @return the slot holding the id, or the empty slot where it would be inserted
+     */
+    private int indexOf(long id) {
+        int index = hash(id) & mMask;
+        while (mKeys[index] != EMPTY && mKeys[index] != id) {
+            index = (index + 1) & mMask;
+        }
+        return index;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = mKeys;
+        mKeys = new long[capacity];
+        mMask = capacity - 1;
+        for (long key : oldKeys) {
+            if (key != EMPTY) {
+                mKeys[indexOf(key)] = key;
+            }
+        }
+    }
+
+    private static int hash(long id) {
+        // murmur3 finalizer, spreads sequential ids over the table
+        id ^= id >>> 33;
+        id *= 0xff51afd7ed558ccdL;
+        id ^= id >>> 33;
+        id *= 0xc4ceb9fe1a85ec53L;
+        id ^= id >>> 33;
+        return (int) id;
+    }
+}
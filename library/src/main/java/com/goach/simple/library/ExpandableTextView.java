@@ -17,18 +17,29 @@
 
 package com.goach.simple.library;
 
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
+import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.support.annotation.DrawableRes;
 import android.support.annotation.IdRes;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.text.Html;
+import android.support.annotation.VisibleForTesting;
+import android.support.annotation.WorkerThread;
+import android.support.v4.view.ViewCompat;
+import android.text.Layout;
+import android.text.PrecomputedText;
+import android.text.Spanned;
+import android.text.StaticLayout;
 import android.text.TextUtils;
+import android.text.method.MovementMethod;
 import android.util.AttributeSet;
 import android.util.SparseBooleanArray;
 import android.view.MotionEvent;
@@ -39,10 +50,8 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 
 import com.goach.simple.library.utils.DeviceUtil;
-import com.nineoldandroids.animation.Animator;
-import com.nineoldandroids.animation.AnimatorListenerAdapter;
-import com.nineoldandroids.animation.ObjectAnimator;
-import com.nineoldandroids.animation.ValueAnimator;
+
+import java.util.List;
 
 
 /**
@@ -73,6 +82,15 @@ public class ExpandableTextView extends LinearLayout implements View.OnClickList
     /* The default animation duration */
     private static final int DEFAULT_ANIM_DURATION = 200;
 
+    /* Animates the height with a layout pass on every frame */
+    public static final int ANIM_MODE_RELAYOUT = 0;
+
+    /* Animates the clip bounds, with a single layout pass per toggle */
+    public static final int ANIM_MODE_CLIP = 1;
+
+    /* A generous estimate of the chars on a line, to size the preview of the collapsed lines */
+    private static final int PREVIEW_CHARS_PER_LINE = 256;
+
     /* The default alpha value when the animation starts */
     private static final float DEFAULT_ANIM_ALPHA_START = 0.7f;
 
@@ -100,6 +118,21 @@ public class ExpandableTextView extends LinearLayout implements View.OnClickList
 
     private boolean mAnimating;
 
+    private int mAnimMode;
+
+    private final Rect mClipBounds = new Rect();
+
+    /* A single animator per view, only used as a ticker for the toggle animation */
+    private final ValueAnimator mAnimator = ValueAnimator.ofFloat(0f, 1f);
+
+    private boolean mClipAnimation;
+
+    private int mAnimStartHeight;
+
+    private int mAnimEndHeight;
+
+    private int mAnimLayoutHeight;
+
     @IdRes
     private int mExpandableTextId = R.id.expandable_text;
 
@@ -114,8 +147,50 @@ public class ExpandableTextView extends LinearLayout implements View.OnClickList
     /* For saving collapsed status when used in ListView */
     private SparseBooleanArray mCollapsedStatus;
     private int mPosition;
+
+    /* For saving expanded status by stable item id, see ExpandStateStore */
+    private ExpandStateStore mStateStore;
+    private long mItemId;
     private boolean isOverlap;
 
+    /* Bumped on every bind so that a stale async parse result is dropped */
+    private int mBindToken;
+    private HtmlParser.ParseTask mParseTask;
+
+    /* Image loads coalesce their relayouts into one per frame */
+    private boolean mRelayoutScheduled;
+    private static long sAvoidedRelayouts;
+
+    /* The bound html source and its lazily computed hash, keys of LayoutMetricsCache */
+    private CharSequence mSource;
+    private long mContentHash;
+    private boolean mContentHashValid;
+    private boolean mHasImages;
+
+    /* The collapsed state, width and style the bound text was laid out with, a rebind with the same ones is skipped */
+    private boolean mBoundCollapsed;
+    private int mBoundWidth;
+    private int mBoundStyleHash;
+
+    /* Collapsed huge posts only parse the html of their first lines, the rest on expand */
+    private boolean mPreviewParse;
+    private boolean mPreviewTruncated;
+    private boolean mFullTextPosted;
+
+    /* The expand/collapse label is a span at the end of the text instead of the toggle view */
+    private boolean mInlineToggle;
+    private boolean mInlineToggleShown;
+    /* The TextView's own movement method, put back when the inline toggle is turned off */
+    private MovementMethod mMovementMethodBeforeInline;
+    private InlineToggle mInlineToggleText;
+    private String mInlineExpandLabel;
+    private String mInlineCollapseLabel;
+
+    /* The bound text without the label, and the texts with the label built from its layout */
+    private CharSequence mPlainText;
+    private CharSequence mInlineCollapsedText;
+    private CharSequence mInlineExpandedText;
+
     public ExpandableTextView(Context context) {
         this(context, null);
     }
@@ -141,53 +216,132 @@ public class ExpandableTextView extends LinearLayout implements View.OnClickList
 
     @Override
     public void onClick(View view) {
-        if (mToggleView.getVisibility() != View.VISIBLE) {
+        if (!isToggleShown()) {
             return;
         }
         mCollapsed = !mCollapsed;
-        if(isOverlap){
+        mBoundCollapsed = mCollapsed;
+        if(isOverlap && !mInlineToggle){
             setOverlap();
         }
         mExpandIndicatorController.changeState(mCollapsed);
-        if (mCollapsedStatus != null) {
-            mCollapsedStatus.put(mPosition, mCollapsed);
+        saveCollapsedStatus();
+        if (!mCollapsed && mPreviewTruncated) {
+            applyFullText();
+            measureFullTextHeight();
+        }
+        if (!mCollapsed) {
+            // images below the collapsed lines start loading with the expansion
+            mTv.setVisibleTextEnd(Integer.MAX_VALUE);
+            if (mInlineToggle) {
+                // the collapsed text is put back once the animation has ended
+                mTv.setText(mInlineExpandedText);
+            }
         }
         // mark that the animation is in progress
         mAnimating = true;
-        ObjectAnimator animator = ObjectAnimator.ofFloat(this, "alpha", 1f, 1f);
-        animator.setDuration(mAnimationDuration);
-        animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                int mStartHeight = getHeight();
-                int mEndHeight;
-                if (mCollapsed) {
-                    mEndHeight = getTextViewLineTop(mTv,mMaxCollapsedLines+2);
-                } else {
-                    mEndHeight = getHeight() + mTextHeightWithMaxLines - mTv.getHeight();
-                }
-                final int newHeight = (int)((mEndHeight - mStartHeight) * animation.getAnimatedFraction() + mStartHeight);
-                mTv.setMaxHeight(newHeight - mMarginBetweenTxtAndBottom);
-                getLayoutParams().height = newHeight;
-                requestLayout();
+        mClipAnimation = mAnimMode == ANIM_MODE_CLIP && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+        if (mClipAnimation) {
+            prepareClipAnimation();
+        } else if (mCollapsed && mInlineToggle) {
+            mAnimEndHeight = getHeight() - mTv.getHeight() + getTextViewLineTop(mTv, mMaxCollapsedLines);
+        } else if (mCollapsed) {
+            mAnimEndHeight = getTextViewLineTop(mTv,mMaxCollapsedLines+2);
+        } else {
+            mAnimEndHeight = getHeight() + mTextHeightWithMaxLines - mTv.getHeight();
+        }
+        // the animator and its listeners are reused, so toggling allocates nothing
+        mAnimator.start();
+    }
+
+    /**
+     * The clip mode animates the clip bounds between the start and end heights, which are computed once.
+     * Expanding commits the expanded layout up front and reveals it, collapsing hides the
+     * text and commits the collapsed layout at the end, so each toggle does a single layout.
+     */
+    private void prepareClipAnimation() {
+        mAnimStartHeight = getHeight();
+        if (mCollapsed) {
+            mAnimEndHeight = mAnimStartHeight - mTv.getHeight() + getTextViewLineTop(mTv, mMaxCollapsedLines);
+        } else {
+            mAnimEndHeight = mAnimStartHeight - mTv.getHeight() + mTextHeightWithMaxLines;
+            mTv.setMaxLines(Integer.MAX_VALUE);
+            getLayoutParams().height = ViewGroup.LayoutParams.WRAP_CONTENT;
+            requestLayout();
+        }
+        // the height the children are laid out at during the animation
+        mAnimLayoutHeight = Math.max(mAnimStartHeight, mAnimEndHeight);
+    }
+
+    private final ValueAnimator.AnimatorUpdateListener mAnimatorUpdateListener = new ValueAnimator.AnimatorUpdateListener() {
+        @Override
+        public void onAnimationUpdate(ValueAnimator animation) {
+            if (mClipAnimation) {
+                updateClip(animation.getAnimatedFraction());
+                return;
             }
-        });
-        animator.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                super.onAnimationEnd(animation);
-                // clear animation here to avoid repeated applyTransformation() calls
-                clearAnimation();
-                // clear the animation flag
-                mAnimating = false;
-                // notify the listener
-                if (mListener != null) {
-                    mListener.onExpandStateChanged(mTv, !mCollapsed);
-                }
+            int startHeight = getHeight();
+            final int newHeight = (int)((mAnimEndHeight - startHeight) * animation.getAnimatedFraction() + startHeight);
+            mTv.setMaxHeight(newHeight - mMarginBetweenTxtAndBottom);
+            getLayoutParams().height = newHeight;
+            requestLayout();
+        }
+    };
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private void updateClip(float fraction) {
+        int clipHeight = (int) ((mAnimEndHeight - mAnimStartHeight) * fraction + mAnimStartHeight);
+        mClipBounds.set(0, 0, getWidth(), clipHeight);
+        setClipBounds(mClipBounds);
+        // keep the toggle at the bottom edge of the clip
+        mToggleView.setTranslationY(clipHeight - mAnimLayoutHeight);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private void endClip() {
+        setClipBounds(null);
+        mToggleView.setTranslationY(0);
+        if (mCollapsed) {
+            mTv.setMaxLines(mMaxCollapsedLines);
+            getLayoutParams().height = ViewGroup.LayoutParams.WRAP_CONTENT;
+            requestLayout();
+        }
+    }
 
+    private final AnimatorListenerAdapter mAnimatorListener = new AnimatorListenerAdapter() {
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            super.onAnimationEnd(animation);
+            if (mClipAnimation) {
+                endClip();
             }
-        });
-        animator.start();
+            if (mInlineToggle && mInlineToggleShown && mCollapsed) {
+                mTv.setText(mInlineCollapsedText);
+            }
+            // clear animation here to avoid repeated applyTransformation() calls
+            clearAnimation();
+            // clear the animation flag
+            mAnimating = false;
+            // the thumbnails are replaced by the full images once expanded
+            mTv.setImagePreview(mCollapsed);
+            // notify the listener
+            if (mListener != null) {
+                mListener.onExpandStateChanged(mTv, !mCollapsed);
+            }
+        }
+    };
+
+    @VisibleForTesting
+    ValueAnimator getToggleAnimator() {
+        return mAnimator;
+    }
+
+    /**
+     * @param animMode - {@link #ANIM_MODE_RELAYOUT} or {@link #ANIM_MODE_CLIP}.
+     *                 The clip mode needs API 18, below that the relayout mode is used.
+     */
+    public void setAnimationMode(int animMode) {
+        mAnimMode = animMode;
     }
 
     @Override
@@ -211,6 +365,26 @@ public class ExpandableTextView extends LinearLayout implements View.OnClickList
             return;
         }
         mRelayout = false;
+        mBoundStyleHash = LayoutMetricsCache.styleHash(mTv);
+        measureText(widthMeasureSpec, heightMeasureSpec);
+        // the width getWidth() reports once laid out, a rebind is compared with it
+        mBoundWidth = getMeasuredWidth();
+    }
+
+    private void measureText(int widthMeasureSpec, int heightMeasureSpec) {
+        if (mInlineToggle) {
+            measureInline(widthMeasureSpec, heightMeasureSpec);
+            return;
+        }
+
+        // A previously seen layout only needs a single measure pass
+        LayoutMetricsCache.Key metricsKey = obtainMetricsKey(widthMeasureSpec);
+        LayoutMetricsCache metricsCache = LayoutMetricsCache.getInstance();
+        LayoutMetrics metrics = metricsKey == null || metricsCache == null ? null : metricsCache.get(metricsKey);
+        if (metrics != null) {
+            measureWithMetrics(metrics, widthMeasureSpec, heightMeasureSpec);
+            return;
+        }
 
         // Setup with optimistic case
         // i.e. Everything fits. No button needed
@@ -220,6 +394,17 @@ public class ExpandableTextView extends LinearLayout implements View.OnClickList
         // Measure
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
 
+        if (mPreviewTruncated && mTv.getLineCount() <= mMaxCollapsedLines) {
+            // the preview doesn't fill the collapsed lines, so whether the toggle shows needs the whole text
+            postFullText();
+        }
+
+        if (metricsKey != null && metricsCache != null && mTv.getLayout() != null) {
+            int lineCount = mTv.getLineCount();
+            metricsCache.putMetrics(metricsKey, new LayoutMetrics(lineCount, getRealTextViewHeight(mTv),
+                    getTextViewLineTop(mTv, Math.min(lineCount, mMaxCollapsedLines)), mMaxCollapsedLines));
+        }
+
         // If the text fits in collapsed mode, we are done.
         if (mTv.getLineCount() <= mMaxCollapsedLines) {
             return;
@@ -239,15 +424,208 @@ public class ExpandableTextView extends LinearLayout implements View.OnClickList
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
 
         if (mCollapsed) {
+            postCollapsedMargin();
+        }
+    }
+
+    /**
+     * The label goes after the last char that fits in the collapsed lines, so the plain text is
+     * laid out first and the text with the label is built from that layout, within the same measure.
+     * The plain text is laid out on its own, so the TextView gets a single setText.
+     */
+    private void measureInline(int widthMeasureSpec, int heightMeasureSpec) {
+        mToggleView.setVisibility(View.GONE);
+        if (!mInlineToggleShown) {
+            mPlainText = mTv.getText();
+        }
+        int width = getTextLayoutWidth(widthMeasureSpec);
+        Layout layout;
+        if (width > 0) {
+            layout = makePlainLayout(width);
+        } else {
+            // no width to lay out at before the TextView measures itself
+            showPlainText();
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+            layout = mTv.getLayout();
+        }
+
+        boolean toggleShown = layout != null && InlineToggle.getContentLineCount(layout, mPlainText) > mMaxCollapsedLines;
+        if (mPreviewTruncated && layout != null && !toggleShown) {
+            // the preview doesn't fill the collapsed lines, so whether the toggle shows needs the whole text
+            postFullText();
+        }
+        if (!toggleShown) {
+            if (width > 0) {
+                showPlainText();
+                super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+            }
+            return;
+        }
+
+        InlineToggle inlineToggle = obtainInlineToggle();
+        inlineToggle.measureLabels(mTv.getPaint());
+        mInlineToggleShown = true;
+        mTextHeightWithMaxLines = getInlineExpandedHeight(layout);
+        mInlineCollapsedText = inlineToggle.collapse(layout, mPlainText, mMaxCollapsedLines, mTv.getPaint());
+        mInlineExpandedText = inlineToggle.expand(mPlainText);
+        if (mCollapsed) {
+            mTv.setText(mInlineCollapsedText);
+            mTv.setMaxLines(mMaxCollapsedLines);
+        } else {
+            mTv.setText(mInlineExpandedText);
+            mTv.setMaxLines(Integer.MAX_VALUE);
+        }
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        // known right away, there is no toggle view below the text to wait for
+        mMarginBetweenTxtAndBottom = getMeasuredHeight() - mTv.getMeasuredHeight();
+    }
+
+    private void showPlainText() {
+        if (mInlineToggleShown) {
+            mInlineToggleShown = false;
+            mTv.setText(mPlainText);
+        }
+        mTv.setMaxLines(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Lays out the plain text the way the TextView would, without setting it
+     */
+    private Layout makePlainLayout(int width) {
+        float spacingMult = 1f;
+        float spacingAdd = 0f;
+        boolean includePad = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            spacingMult = mTv.getLineSpacingMultiplier();
+            spacingAdd = mTv.getLineSpacingExtra();
+            includePad = mTv.getIncludeFontPadding();
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            return buildPlainLayout(width, spacingMult, spacingAdd, includePad);
+        }
+        return new StaticLayout(mPlainText, mTv.getPaint(), width, Layout.Alignment.ALIGN_NORMAL,
+                spacingMult, spacingAdd, includePad);
+    }
+
+    @TargetApi(Build.VERSION_CODES.M)
+    private Layout buildPlainLayout(int width, float spacingMult, float spacingAdd, boolean includePad) {
+        return StaticLayout.Builder.obtain(mPlainText, 0, mPlainText.length(), mTv.getPaint(), width)
+                .setLineSpacing(spacingAdd, spacingMult)
+                .setIncludePad(includePad)
+                .setBreakStrategy(mTv.getBreakStrategy())
+                .setHyphenationFrequency(mTv.getHyphenationFrequency())
+                .build();
+    }
+
+    private int getInlineExpandedHeight(@NonNull Layout layout) {
+        return obtainInlineToggle().getExpandedHeight(layout, mPlainText)
+                + mTv.getCompoundPaddingTop() + mTv.getCompoundPaddingBottom();
+    }
+
+    private InlineToggle obtainInlineToggle() {
+        if (mInlineToggleText == null) {
+            int color = mToggleView instanceof TextView
+                    ? ((TextView) mToggleView).getCurrentTextColor() : mTv.getCurrentTextColor();
+            mInlineToggleText = new InlineToggle(mInlineExpandLabel, mInlineCollapseLabel, color, mInlineToggleListener);
+        }
+        return mInlineToggleText;
+    }
+
+    private final View.OnClickListener mInlineToggleListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View view) {
+            // a click on the text toggles by itself, the span only handles it when that is off
+            if (!mExpandToggleOnTextClick) {
+                ExpandableTextView.this.onClick(view);
+            }
+        }
+    };
+
+    private boolean isToggleShown() {
+        return mInlineToggle ? mInlineToggleShown : mToggleView.getVisibility() == View.VISIBLE;
+    }
+
+    private void measureWithMetrics(LayoutMetrics metrics, int widthMeasureSpec, int heightMeasureSpec) {
+        if (!metrics.isToggleVisible()) {
+            mToggleView.setVisibility(View.GONE);
+            mTv.setMaxLines(Integer.MAX_VALUE);
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+            return;
+        }
+        mTextHeightWithMaxLines = metrics.getFullHeight();
+        mTv.setMaxLines(mCollapsed ? mMaxCollapsedLines : Integer.MAX_VALUE);
+        mToggleView.setVisibility(View.VISIBLE);
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        if (mCollapsed) {
+            postCollapsedMargin();
+        }
+    }
+
+    private void postCollapsedMargin() {
+        mTv.removeCallbacks(mCollapsedMarginRunnable);
+        mTv.post(mCollapsedMarginRunnable);
+    }
+
+    private final Runnable mCollapsedMarginRunnable = new Runnable() {
+        @Override
+        public void run() {
             // Gets the margin between the TextView's bottom and the ViewGroup's bottom
-            mTv.post(new Runnable() {
-                @Override
-                public void run() {
-                    mMarginBetweenTxtAndBottom = getHeight() - mTv.getHeight();
-                    mCollapsedWidth = mTv.getMeasuredWidth();
-                }
-            });
+            mMarginBetweenTxtAndBottom = getHeight() - mTv.getHeight();
+            mCollapsedWidth = mTv.getMeasuredWidth();
+        }
+    };
+
+    /**
+     * @return the key of the current content in {@link LayoutMetricsCache}, null if it can't be cached
+     */
+    @Nullable
+    private LayoutMetricsCache.Key obtainMetricsKey(int widthMeasureSpec) {
+        if (mSource == null || mHasImages || mPreviewTruncated || mInlineToggle || MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.UNSPECIFIED) {
+            // image bounds change once they are loaded, so their layout can't be reused,
+            // and the inline label needs the line breaks, which the metrics don't keep
+            return null;
+        }
+        return new LayoutMetricsCache.Key(getContentHash(), getTextLayoutWidth(widthMeasureSpec),
+                LayoutMetricsCache.styleHash(mTv), mMaxCollapsedLines, LayoutMetricsCache.hasStableTypeface(mTv.getPaint()));
+    }
+
+    /**
+     * @return the width the text is laid out at, without paddings and margins, 0 if the width is unspecified
+     */
+    private int getTextLayoutWidth(int widthMeasureSpec) {
+        if (MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.UNSPECIFIED) {
+            return 0;
         }
+        int width = MeasureSpec.getSize(widthMeasureSpec) - getPaddingLeft() - getPaddingRight()
+                - mTv.getCompoundPaddingLeft() - mTv.getCompoundPaddingRight();
+        ViewGroup.LayoutParams params = mTv.getLayoutParams();
+        if (params instanceof MarginLayoutParams) {
+            width -= ((MarginLayoutParams) params).leftMargin + ((MarginLayoutParams) params).rightMargin;
+        }
+        return Math.max(0, width);
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        super.onLayout(changed, l, t, r, b);
+        updateVisibleTextEnd();
+    }
+
+    /**
+     * Only the images within the collapsed lines are loaded until the view expands
+     */
+    private void updateVisibleTextEnd() {
+        Layout layout = mTv.getLayout();
+        if (layout != null && !isToggleShown()) {
+            // the content fits, the images show in full right away
+            mTv.setImagePreview(false);
+        }
+        if (layout == null || !mCollapsed || !isToggleShown()) {
+            mTv.setVisibleTextEnd(layout == null && mCollapsed ? 0 : Integer.MAX_VALUE);
+            return;
+        }
+        int lines = Math.min(mMaxCollapsedLines, layout.getLineCount());
+        mTv.setVisibleTextEnd(lines <= 0 ? 0 : layout.getLineEnd(lines - 1));
     }
 
     public void setOnExpandStateChangeListener(@Nullable OnExpandStateChangeListener listener) {
@@ -255,29 +633,372 @@ public class ExpandableTextView extends LinearLayout implements View.OnClickList
     }
 
     public void setText(@Nullable CharSequence text) {
-        mRelayout = true;
-        if(TextUtils.isEmpty(text) || !text.toString().contains("<img")){
-            mTv.setText(TextUtils.isEmpty(text)?"": Html.fromHtml(text.toString()));
-        }else{
-            mTv.setHtml(text.toString());
+        if (isBound(text)) {
+            return;
         }
-        setVisibility(TextUtils.isEmpty(text) ? View.GONE : View.VISIBLE);
-        clearAnimation();
-        getLayoutParams().height = ViewGroup.LayoutParams.WRAP_CONTENT;
-        if(isOverlap){
+        cancelPendingParse();
+        if (mPreviewParse && mCollapsed) {
+            HtmlParser.Preview preview = HtmlParser.parsePreview(text, (mMaxCollapsedLines + 1) * PREVIEW_CHARS_PER_LINE);
+            applyText(text, preview == null ? null : preview.getParsed(), null);
+            mPreviewTruncated = preview != null && preview.isTruncated();
+            return;
+        }
+        applyText(text, HtmlParser.parse(text), null);
+    }
+
+    /**
+     * Appends to the bound text, for streaming content such as live transcripts. The text is
+     * extended in place and only the changed paragraphs are laid out again, see
+     * {@link android.text.DynamicLayout}, the toggle shows as soon as the text outgrows the collapsed lines.
+     */
+    public void appendText(@Nullable CharSequence text) {
+        if (TextUtils.isEmpty(text)) {
+            return;
+        }
+        prepareAppend();
+        mTv.append(text);
+        onAppended();
+    }
+
+    /**
+     * Like {@link #appendText}, but the chunk is html. Every chunk is parsed on its own,
+     * so a chunk shouldn't end in the middle of a tag.
+     */
+    public void appendHtml(@Nullable CharSequence html) {
+        Spanned parsed = HtmlParser.parseFragment(html);
+        if (parsed == null || parsed.length() == 0) {
+            return;
+        }
+        prepareAppend();
+        mHasImages |= HtmlParser.hasImages(parsed);
+        mTv.appendParsedHtml(parsed);
+        onAppended();
+    }
+
+    private void prepareAppend() {
+        if (mPreviewTruncated) {
+            applyFullText();
+        }
+        if (mInlineToggleShown) {
+            // append to the text without the label
+            mInlineToggleShown = false;
+            mTv.setText(mPlainText);
+        }
+        // the text is no longer a single source, so its layout isn't cached
+        mSource = null;
+        mContentHashValid = false;
+        setVisibility(View.VISIBLE);
+        if (!mCollapsed && !mAnimating && getLayoutParams().height != ViewGroup.LayoutParams.WRAP_CONTENT) {
+            // the relayout animation left a fixed height behind, the expanded text grows from here on
+            getLayoutParams().height = ViewGroup.LayoutParams.WRAP_CONTENT;
+            mTv.setMaxHeight(Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Updates the toggle from the reflowed layout instead of the two-pass measure of a new text
+     */
+    private void onAppended() {
+        mPlainText = mTv.getText();
+        Layout layout = mTv.getLayout();
+        if (mRelayout || layout == null || mInlineToggle) {
+            // the inline label is placed by a measure, the same way as for a new text
+            // the text has no layout yet, the next measure sets up the toggle
+            mRelayout = true;
+            requestLayout();
+            return;
+        }
+        boolean toggleVisible = layout.getLineCount() > mMaxCollapsedLines;
+        if (toggleVisible) {
+            mTextHeightWithMaxLines = getRealTextViewHeight(mTv);
+        }
+        boolean changed = toggleVisible != (mToggleView.getVisibility() == View.VISIBLE);
+        if (changed) {
+            mToggleView.setVisibility(toggleVisible ? View.VISIBLE : View.GONE);
+            if (mCollapsed) {
+                mTv.setMaxLines(toggleVisible ? mMaxCollapsedLines : Integer.MAX_VALUE);
+                if (toggleVisible) {
+                    postCollapsedMargin();
+                }
+            }
+        }
+        if (isOverlap && (changed || !mCollapsed)) {
             setOverlap();
         }
-        requestLayout();
+    }
+
+    /**
+     * With preview parsing, {@link #setText(CharSequence)} parses only the beginning of a huge
+     * collapsed post, enough to fill the collapsed lines and decide whether the toggle shows.
+     * The rest is parsed when the view expands. Off by default.
+     * <p>
+     * Only {@link #setText(CharSequence)} binds a preview. {@link #setTextAsync} already parses off
+     * the main thread and a {@link PrecomputedLayout} is parsed in full up front, so both bind the whole text.
+     */
+    public void setPreviewParseEnabled(boolean enabled) {
+        mPreviewParse = enabled;
+    }
+
+    /**
+     * @return true while only the beginning of the html is bound, see {@link #setPreviewParseEnabled}
+     */
+    public boolean isPreviewTruncated() {
+        return mPreviewTruncated;
+    }
+
+    /**
+     * The whole text replaces the preview after the current measure, setting it during the
+     * measure would request another layout from within it
+     */
+    private void postFullText() {
+        if (!mFullTextPosted) {
+            mFullTextPosted = true;
+            post(mFullTextRunnable);
+        }
+    }
+
+    private void cancelFullText() {
+        if (mFullTextPosted) {
+            mFullTextPosted = false;
+            removeCallbacks(mFullTextRunnable);
+        }
+    }
+
+    private final Runnable mFullTextRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mFullTextPosted = false;
+            if (mPreviewTruncated) {
+                applyFullText();
+                resetMeasure();
+            }
+        }
+    };
+
+    /**
+     * Replaces the bound preview with the whole text
+     */
+    private void applyFullText() {
+        cancelFullText();
+        mPreviewTruncated = false;
+        Spanned parsed = HtmlParser.parse(mSource);
+        mHasImages = HtmlParser.hasImages(parsed);
+        mTv.setParsedHtml(parsed);
+        mPlainText = mTv.getText();
+    }
+
+    /**
+     * The expand animation needs the height of the whole text up front
+     */
+    private void measureFullTextHeight() {
+        mTv.setMaxLines(Integer.MAX_VALUE);
+        mTv.measure(MeasureSpec.makeMeasureSpec(mTv.getWidth(), MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED));
+        if (mInlineToggle) {
+            mInlineExpandedText = obtainInlineToggle().expand(mPlainText);
+            mTextHeightWithMaxLines = getInlineExpandedHeight(mTv.getLayout());
+        } else {
+            mTextHeightWithMaxLines = getRealTextViewHeight(mTv);
+        }
+        mTv.setMaxLines(mMaxCollapsedLines);
     }
 
     public void setText(@Nullable CharSequence text, @NonNull SparseBooleanArray collapsedStatus, int position) {
+        restoreCollapsedStatus(collapsedStatus, position);
+        setText(text);
+    }
+
+    /**
+     * Like {@link #setText(CharSequence, SparseBooleanArray, int)}, but the state is keyed by the
+     * adapter's stable item id, so it survives inserts and removes in the list.
+     */
+    public void setText(@Nullable CharSequence text, @NonNull ExpandStateStore stateStore, long itemId) {
+        restoreExpandState(stateStore, itemId);
+        setText(text);
+    }
+
+    /**
+     * Same as {@link #setText(CharSequence)}, but the html is parsed on the {@link HtmlParser} executor
+     * and the result is applied on the main thread. A result that arrives after the view has been
+     * bound again is dropped.
+     */
+    public void setTextAsync(@Nullable CharSequence text) {
+        if (isBound(text)) {
+            return;
+        }
+        cancelPendingParse();
+        if (TextUtils.isEmpty(text)) {
+            applyText(null, null, null);
+            return;
+        }
+        final int token = mBindToken;
+        // don't leave the previous item's text and images behind while parsing
+        mSource = null;
+        mContentHashValid = false;
+        mTv.clear();
+        mTv.setText("", TextView.BufferType.NORMAL);
+        setVisibility(View.VISIBLE);
+        mParseTask = HtmlParser.parseAsync(text, new HtmlParser.Callback() {
+            @Override
+            public void onParsed(@Nullable CharSequence source, @Nullable Spanned parsed) {
+                if (token != mBindToken) {
+                    return;
+                }
+                mParseTask = null;
+                applyText(source, parsed, null);
+            }
+        });
+    }
+
+    public void setTextAsync(@Nullable CharSequence text, @NonNull SparseBooleanArray collapsedStatus, int position) {
+        restoreCollapsedStatus(collapsedStatus, position);
+        setTextAsync(text);
+    }
+
+    public void setTextAsync(@Nullable CharSequence text, @NonNull ExpandStateStore stateStore, long itemId) {
+        restoreExpandState(stateStore, itemId);
+        setTextAsync(text);
+    }
+
+    /**
+     * Builds the layout of the html on the calling thread, see {@link PrecomputedLayout#create}.
+     * Meant for RecyclerView prefetch: call it on a worker thread and bind the result
+     * with {@link #setText(PrecomputedLayout)}.
+     */
+    @WorkerThread
+    @NonNull
+    public static PrecomputedLayout precompute(@Nullable CharSequence text, @NonNull PrecomputedLayout.Params params) {
+        return PrecomputedLayout.create(text, params);
+    }
+
+    /**
+     * Batch version of {@link #precompute} for a page of content, see {@link PrecomputedLayout#createAll}
+     */
+    @WorkerThread
+    @NonNull
+    public static List<PrecomputedLayout> precomputeAll(@NonNull List<? extends CharSequence> texts,
+                                                        @NonNull PrecomputedLayout.Params params) {
+        return PrecomputedLayout.createAll(texts, params);
+    }
+
+    /**
+     * @param textWidth - the width of the text layout, i.e. the TextView width without its paddings
+     * @return the current text style, must be called on the main thread
+     */
+    @NonNull
+    public PrecomputedLayout.Params getPrecomputeParams(int textWidth) {
+        return new PrecomputedLayout.Params(mTv, textWidth, mMaxCollapsedLines);
+    }
+
+    /**
+     * Binds a layout built by {@link #precompute}, the bind itself does no parsing or line breaking.
+     */
+    public void setText(@NonNull PrecomputedLayout layout) {
+        if (isBound(layout.getSource())) {
+            return;
+        }
+        cancelPendingParse();
+        applyText(layout.getSource(), layout.getParsed(), layout.getPrecomputedText());
+    }
+
+    public void setText(@NonNull PrecomputedLayout layout, @NonNull SparseBooleanArray collapsedStatus, int position) {
+        restoreCollapsedStatus(collapsedStatus, position);
+        setText(layout);
+    }
+
+    public void setText(@NonNull PrecomputedLayout layout, @NonNull ExpandStateStore stateStore, long itemId) {
+        restoreExpandState(stateStore, itemId);
+        setText(layout);
+    }
+
+    /**
+     * A rebind of the same content, e.g. after notifyItemChanged for another field of the item,
+     * keeps the bound text, its layout and its images as they are
+     *
+     * @return true if the text is already bound with the same collapsed state and width
+     */
+    private boolean isBound(@Nullable CharSequence text) {
+        if (text == null || mSource == null || mParseTask != null || mAnimating || mCollapsed != mBoundCollapsed
+                || (!mRelayout && (getWidth() != mBoundWidth || LayoutMetricsCache.styleHash(mTv) != mBoundStyleHash))) {
+            return false;
+        }
+        // a String can't have changed since it was bound, other sources are compared by their hash
+        return text == mSource && text instanceof String
+                || text.length() == mSource.length() && LayoutMetricsCache.contentHash(text) == getContentHash();
+    }
+
+    private long getContentHash() {
+        if (!mContentHashValid) {
+            mContentHash = LayoutMetricsCache.contentHash(mSource);
+            mContentHashValid = true;
+        }
+        return mContentHash;
+    }
+
+    private void restoreCollapsedStatus(@NonNull SparseBooleanArray collapsedStatus, int position) {
         mCollapsedStatus = collapsedStatus;
         mPosition = position;
-        boolean isCollapsed = collapsedStatus.get(position, true);
+        mStateStore = null;
+        setCollapsedInternal(collapsedStatus.get(position, true));
+    }
+
+    private void restoreExpandState(@NonNull ExpandStateStore stateStore, long itemId) {
+        mStateStore = stateStore;
+        mItemId = itemId;
+        mCollapsedStatus = null;
+        setCollapsedInternal(!stateStore.isExpanded(itemId));
+    }
+
+    private void setCollapsedInternal(boolean isCollapsed) {
         clearAnimation();
         mCollapsed = isCollapsed;
         mExpandIndicatorController.changeState(mCollapsed);
-        setText(text);
+    }
+
+    private void saveCollapsedStatus() {
+        if (mCollapsedStatus != null) {
+            mCollapsedStatus.put(mPosition, mCollapsed);
+        }
+        if (mStateStore != null) {
+            mStateStore.setExpanded(mItemId, !mCollapsed);
+        }
+    }
+
+    private void cancelPendingParse() {
+        mBindToken++;
+        if (mParseTask != null) {
+            mParseTask.cancel();
+            mParseTask = null;
+        }
+    }
+
+    private void applyText(@Nullable CharSequence source, @Nullable Spanned parsed, @Nullable CharSequence precomputed) {
+        cancelScheduledRelayout();
+        cancelFullText();
+        mRelayout = true;
+        mSource = source;
+        mContentHashValid = false;
+        mBoundCollapsed = mCollapsed;
+        mPreviewTruncated = false;
+        mHasImages = HtmlParser.hasImages(parsed);
+        // images wait for the first layout to know which of them are visible
+        mTv.setImagePreview(mCollapsed);
+        mTv.setVisibleTextEnd(mCollapsed ? 0 : Integer.MAX_VALUE);
+        // an append left the TextView on the EDITABLE buffer type, a new text goes back to a static layout
+        if (precomputed != null && isPrecomputedTextValid(precomputed)) {
+            mTv.setText(precomputed, TextView.BufferType.NORMAL);
+        } else {
+            mTv.setParsedHtml(parsed, TextView.BufferType.NORMAL);
+        }
+        mPlainText = mTv.getText();
+        mInlineToggleShown = false;
+        setVisibility(parsed == null ? View.GONE : View.VISIBLE);
+        clearAnimation();
+        getLayoutParams().height = ViewGroup.LayoutParams.WRAP_CONTENT;
+        if(isOverlap && !mInlineToggle){
+            setOverlap();
+        }
+        requestLayout();
     }
 
     @Nullable
@@ -293,10 +1014,25 @@ public class ExpandableTextView extends LinearLayout implements View.OnClickList
         mMaxCollapsedLines = typedArray.getInt(R.styleable.ExpandableTextView_maxCollapsedLines, MAX_COLLAPSED_LINES);
         mAnimationDuration = typedArray.getInt(R.styleable.ExpandableTextView_animDuration, DEFAULT_ANIM_DURATION);
         mAnimAlphaStart = typedArray.getFloat(R.styleable.ExpandableTextView_animAlphaStart, DEFAULT_ANIM_ALPHA_START);
+        mAnimMode = typedArray.getInt(R.styleable.ExpandableTextView_animMode, ANIM_MODE_RELAYOUT);
+        mAnimator.setDuration(mAnimationDuration);
+        mAnimator.addUpdateListener(mAnimatorUpdateListener);
+        mAnimator.addListener(mAnimatorListener);
         mExpandableTextId = typedArray.getResourceId(R.styleable.ExpandableTextView_expandableTextId, R.id.expandable_text);
         mExpandCollapseToggleId = typedArray.getResourceId(R.styleable.ExpandableTextView_expandCollapseToggleId, R.id.expandable_state_text);
         mExpandToggleOnTextClick = typedArray.getBoolean(R.styleable.ExpandableTextView_expandToggleOnTextClick, true);
         isOverlap = typedArray.getBoolean(R.styleable.ExpandableTextView_isOverlap, false);
+        mInlineToggle = typedArray.getBoolean(R.styleable.ExpandableTextView_inlineToggle, false);
+        if (typedArray.getInt(R.styleable.ExpandableTextView_expandToggleType, DEFAULT_TOGGLE_TYPE) == EXPAND_INDICATOR_TEXT_VIEW) {
+            mInlineExpandLabel = typedArray.getString(R.styleable.ExpandableTextView_expandIndicator);
+            mInlineCollapseLabel = typedArray.getString(R.styleable.ExpandableTextView_collapseIndicator);
+        }
+        if (mInlineExpandLabel == null) {
+            mInlineExpandLabel = getContext().getString(R.string.expandable_expand);
+        }
+        if (mInlineCollapseLabel == null) {
+            mInlineCollapseLabel = getContext().getString(R.string.expandable_collapse);
+        }
         mExpandIndicatorController = setupExpandToggleController(getContext(), typedArray);
 
         typedArray.recycle();
@@ -318,9 +1054,52 @@ public class ExpandableTextView extends LinearLayout implements View.OnClickList
         mExpandIndicatorController.setView(mToggleView);
         mExpandIndicatorController.changeState(mCollapsed);
         mToggleView.setOnClickListener(this);
+        if (mInlineToggle) {
+            installLinkMovementMethod();
+        }
     }
+
+    /**
+     * With the inline toggle, the collapsed text ends with an ellipsis and the expand label, and the
+     * expanded text with the collapse label, both clickable spans. The toggle view stays hidden.
+     * Unlike {@link #setOverlap()} it needs no extra layout pass. Off by default, see the inlineToggle attribute.
+     */
+    public void setInlineToggleEnabled(boolean enabled) {
+        if (mInlineToggle == enabled) {
+            return;
+        }
+        mInlineToggle = enabled;
+        if (mTv == null) {
+            return;
+        }
+        if (enabled) {
+            installLinkMovementMethod();
+        } else {
+            mTv.setMovementMethod(mMovementMethodBeforeInline);
+            mMovementMethodBeforeInline = null;
+            if (mInlineToggleShown) {
+                mInlineToggleShown = false;
+                mTv.setText(mPlainText);
+            }
+        }
+        resetMeasure();
+    }
+
+    /**
+     * The label spans need a movement method to be clicked, the TextView's own one is kept for later.
+     * Only the label reacts to it, the links of the html stay as they are without the inline toggle.
+     */
+    private void installLinkMovementMethod() {
+        mMovementMethodBeforeInline = mTv.getMovementMethod();
+        mTv.setMovementMethod(InlineToggle.ToggleMovementMethod.getInstance());
+    }
+
+    public boolean isInlineToggleEnabled() {
+        return mInlineToggle;
+    }
+
     public void setOverlap(){
-        if(mTv == null || mToggleView == null){
+        if(mTv == null || mToggleView == null || mInlineToggle){
             return;
         }
         String showContent = getText() == null ? "" :getText().toString();
@@ -330,14 +1109,16 @@ public class ExpandableTextView extends LinearLayout implements View.OnClickList
         if(mCollapsedWidth > 0){
             handlerOverlap();
         }
-        mTv.post(new Runnable() {
-            @Override
-            public void run() {
-                mCollapsedWidth = mTv.getMeasuredWidth();
-                handlerOverlap();
-            }
-        });
+        mTv.removeCallbacks(mOverlapRunnable);
+        mTv.post(mOverlapRunnable);
     }
+    private final Runnable mOverlapRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mCollapsedWidth = mTv.getMeasuredWidth();
+            handlerOverlap();
+        }
+    };
     private void handlerOverlap(){
         TextView mExpandFootView = (TextView) mToggleView;
         LinearLayout.LayoutParams params = (LayoutParams) mExpandFootView.getLayoutParams();
@@ -358,6 +1139,15 @@ public class ExpandableTextView extends LinearLayout implements View.OnClickList
         }
         mExpandFootView.setLayoutParams(params);
     }
+    /**
+     * PrecomputedText can only be set if the text style hasn't changed since it was computed
+     */
+    private boolean isPrecomputedTextValid(@NonNull CharSequence precomputed) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.P
+                && precomputed instanceof PrecomputedText
+                && ((PrecomputedText) precomputed).getParams().equals(mTv.getTextMetricsParams());
+    }
+
     private static boolean isPostLolipop() {
         return Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP;
     }
@@ -365,6 +1155,41 @@ public class ExpandableTextView extends LinearLayout implements View.OnClickList
         mRelayout = true;
         requestLayout();
     }
+
+    /**
+     * Like {@link #resetMeasure()}, but any number of calls before the next frame
+     * cause a single re-measure. Used when inline images finish loading.
+     */
+    public void scheduleRelayout(){
+        if(mRelayoutScheduled || mRelayout){
+            sAvoidedRelayouts++;
+            return;
+        }
+        mRelayoutScheduled = true;
+        ViewCompat.postOnAnimation(this, mRelayoutRunnable);
+    }
+
+    private void cancelScheduledRelayout(){
+        if(mRelayoutScheduled){
+            mRelayoutScheduled = false;
+            removeCallbacks(mRelayoutRunnable);
+        }
+    }
+
+    private final Runnable mRelayoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mRelayoutScheduled = false;
+            resetMeasure();
+        }
+    };
+
+    /**
+     * @return the number of relayouts saved by {@link #scheduleRelayout()} across all views
+     */
+    public static long getAvoidedRelayoutCount(){
+        return sAvoidedRelayouts;
+    }
     @TargetApi(Build.VERSION_CODES.LOLLIPOP)
     private static Drawable getDrawable(@NonNull Context context, @DrawableRes int resId) {
         Resources resources = context.getResources();
@@ -418,10 +1243,11 @@ public class ExpandableTextView extends LinearLayout implements View.OnClickList
         /**
          * Called when the expand/collapse animation has been finished
          *
-         * @param textView - TextView being expanded/collapsed
+         * @param textView - TextView being expanded/collapsed, null for a {@link FlatExpandableTextView},
+         *                 which draws its text without a TextView
          * @param isExpanded - true if the TextView has been expanded
          */
-        void onExpandStateChanged(TextView textView, boolean isExpanded);
+        void onExpandStateChanged(@Nullable TextView textView, boolean isExpanded);
     }
 
     interface ExpandIndicatorController {
@@ -475,7 +1301,14 @@ public class ExpandableTextView extends LinearLayout implements View.OnClickList
             mTextView = (TextView) toggleView;
         }
     }
+    /**
+     * Releases the image targets, e.g. from onViewRecycled. The bound text no longer has its
+     * images, so the next bind is applied even with the same content.
+     */
     public void clear(){
+        cancelPendingParse();
+        mSource = null;
+        mContentHashValid = false;
         if(mTv !=null){
             mTv.clear();
         }
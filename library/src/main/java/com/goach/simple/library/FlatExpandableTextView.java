@@ -0,0 +1,446 @@
+package com.goach.simple.library;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.support.v4.content.ContextCompat;
+import android.text.Layout;
+import android.text.Spanned;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.AttributeSet;
+import android.util.SparseBooleanArray;
+import android.util.TypedValue;
+import android.view.View;
+
+/**
+ * author: Goach.zhong
+ * Date: 2026/10/19 22:40.
+ * Des:单个View实现的ExpandableTextView，文字和展开收起的提示都直接画在自己的canvas上，
+ * 没有子View，也不需要调整topMargin，列表里每一行少两个View和几次measure。
+ * 只支持文字，<img>不加载，带图片的内容还是用ExpandableTextView。
+ * OnExpandStateChangeListener回调的TextView参数为null
+ */
+public class FlatExpandableTextView extends View implements View.OnClickListener {
+
+    private static final int EXPAND_INDICATOR_IMAGE_BUTTON = 0;
+
+    private static final int EXPAND_INDICATOR_TEXT_VIEW = 1;
+
+    /* The default number of lines */
+    private static final int MAX_COLLAPSED_LINES = 2;
+
+    /* The default animation duration */
+    private static final int DEFAULT_ANIM_DURATION = 200;
+
+    /* The default text size in sp */
+    private static final int DEFAULT_TEXT_SIZE = 14;
+
+    private final TextPaint mTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+
+    private ColorStateList mTextColor = ColorStateList.valueOf(Color.BLACK);
+
+    private float mSpacingMult = 1f;
+
+    private float mSpacingAdd;
+
+    private CharSequence mSource;
+
+    private Spanned mText;
+
+    /* The layout of the whole text, rebuilt when the text, style or width changes */
+    private StaticLayout mLayout;
+
+    private int mMaxCollapsedLines;
+
+    private boolean mCollapsed = true;
+
+    private boolean mTextIndicator;
+
+    private String mExpandText;
+
+    private String mCollapseText;
+
+    /* The label widths, measured when the label or the paint changes instead of on every draw */
+    private float mExpandTextWidth;
+
+    private float mCollapseTextWidth;
+
+    private Drawable mExpandDrawable;
+
+    private Drawable mCollapseDrawable;
+
+    /* A single animator per view, only used as a ticker for the toggle animation */
+    private final ValueAnimator mAnimator = ValueAnimator.ofFloat(0f, 1f);
+
+    private boolean mAnimating;
+
+    private int mAnimStartHeight;
+
+    private int mAnimEndHeight;
+
+    /* The text height shown in the current animation frame */
+    private int mAnimTextHeight;
+
+    private ExpandableTextView.OnExpandStateChangeListener mListener;
+
+    /* For saving collapsed status when used in ListView */
+    private SparseBooleanArray mCollapsedStatus;
+    private int mPosition;
+
+    /* For saving expanded status by stable item id, see ExpandStateStore */
+    private ExpandStateStore mStateStore;
+    private long mItemId;
+
+    public FlatExpandableTextView(Context context) {
+        this(context, null);
+    }
+
+    public FlatExpandableTextView(Context context, @Nullable AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public FlatExpandableTextView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init(attrs);
+    }
+
+    private void init(AttributeSet attrs) {
+        Context context = getContext();
+        TypedArray typedArray = context.obtainStyledAttributes(attrs, R.styleable.ExpandableTextView);
+        mMaxCollapsedLines = typedArray.getInt(R.styleable.ExpandableTextView_maxCollapsedLines, MAX_COLLAPSED_LINES);
+        mAnimator.setDuration(typedArray.getInt(R.styleable.ExpandableTextView_animDuration, DEFAULT_ANIM_DURATION));
+        mTextIndicator = typedArray.getInt(R.styleable.ExpandableTextView_expandToggleType,
+                EXPAND_INDICATOR_TEXT_VIEW) == EXPAND_INDICATOR_TEXT_VIEW;
+        if (mTextIndicator) {
+            mExpandText = typedArray.getString(R.styleable.ExpandableTextView_expandIndicator);
+            mCollapseText = typedArray.getString(R.styleable.ExpandableTextView_collapseIndicator);
+        } else {
+            mExpandDrawable = typedArray.getDrawable(R.styleable.ExpandableTextView_expandIndicator);
+            mCollapseDrawable = typedArray.getDrawable(R.styleable.ExpandableTextView_collapseIndicator);
+        }
+        typedArray.recycle();
+
+        typedArray = context.obtainStyledAttributes(attrs, R.styleable.FlatExpandableTextView);
+        float defaultTextSize = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, DEFAULT_TEXT_SIZE,
+                getResources().getDisplayMetrics());
+        mTextPaint.setTextSize(typedArray.getDimension(R.styleable.FlatExpandableTextView_android_textSize, defaultTextSize));
+        ColorStateList textColor = typedArray.getColorStateList(R.styleable.FlatExpandableTextView_android_textColor);
+        if (textColor != null) {
+            mTextColor = textColor;
+        }
+        mSpacingAdd = typedArray.getDimension(R.styleable.FlatExpandableTextView_android_lineSpacingExtra, 0f);
+        mSpacingMult = typedArray.getFloat(R.styleable.FlatExpandableTextView_android_lineSpacingMultiplier, 1f);
+        typedArray.recycle();
+
+        if (mExpandText == null) {
+            mExpandText = context.getString(R.string.expandable_expand);
+        }
+        if (mCollapseText == null) {
+            mCollapseText = context.getString(R.string.expandable_collapse);
+        }
+        if (!mTextIndicator) {
+            if (mExpandDrawable == null) {
+                mExpandDrawable = ContextCompat.getDrawable(context, R.drawable.a_small_developdown);
+            }
+            if (mCollapseDrawable == null) {
+                mCollapseDrawable = ContextCompat.getDrawable(context, R.drawable.a_small_developup);
+            }
+        }
+        mTextPaint.density = getResources().getDisplayMetrics().density;
+        mTextPaint.setColor(mTextColor.getColorForState(getDrawableState(), mTextColor.getDefaultColor()));
+        measureLabels();
+
+        mAnimator.addUpdateListener(mAnimatorUpdateListener);
+        mAnimator.addListener(mAnimatorListener);
+        setOnClickListener(this);
+    }
+
+    /**
+     * The listener is called with a null TextView, this view has none
+     */
+    public void setOnExpandStateChangeListener(@Nullable ExpandableTextView.OnExpandStateChangeListener listener) {
+        mListener = listener;
+    }
+
+    public void setText(@Nullable CharSequence text) {
+        endAnimation();
+        mSource = text;
+        mText = HtmlParser.parse(text);
+        mLayout = null;
+        setVisibility(mText == null ? View.GONE : View.VISIBLE);
+        requestLayout();
+        invalidate();
+    }
+
+    public void setText(@Nullable CharSequence text, @NonNull SparseBooleanArray collapsedStatus, int position) {
+        mCollapsedStatus = collapsedStatus;
+        mPosition = position;
+        mStateStore = null;
+        mCollapsed = collapsedStatus.get(position, true);
+        setText(text);
+    }
+
+    /**
+     * Like {@link #setText(CharSequence, SparseBooleanArray, int)}, but the state is keyed by the
+     * adapter's stable item id, so it survives inserts and removes in the list.
+     */
+    public void setText(@Nullable CharSequence text, @NonNull ExpandStateStore stateStore, long itemId) {
+        mStateStore = stateStore;
+        mItemId = itemId;
+        mCollapsedStatus = null;
+        mCollapsed = !stateStore.isExpanded(itemId);
+        setText(text);
+    }
+
+    @Nullable
+    public CharSequence getText() {
+        return mText;
+    }
+
+    @Nullable
+    public CharSequence getSource() {
+        return mSource;
+    }
+
+    /**
+     * @param size - the text size in sp, like {@link android.widget.TextView#setTextSize(float)}
+     */
+    public void setTextSize(float size) {
+        setTextSize(TypedValue.COMPLEX_UNIT_SP, size);
+    }
+
+    public void setTextSize(int unit, float size) {
+        float px = TypedValue.applyDimension(unit, size, getResources().getDisplayMetrics());
+        if (px != mTextPaint.getTextSize()) {
+            mTextPaint.setTextSize(px);
+            onTextStyleChanged();
+        }
+    }
+
+    public void setTextColor(int color) {
+        setTextColor(ColorStateList.valueOf(color));
+    }
+
+    public void setTextColor(@NonNull ColorStateList colors) {
+        mTextColor = colors;
+        mTextPaint.setColor(colors.getColorForState(getDrawableState(), colors.getDefaultColor()));
+        invalidate();
+    }
+
+    public void setLineSpacing(float add, float mult) {
+        mSpacingAdd = add;
+        mSpacingMult = mult;
+        onTextStyleChanged();
+    }
+
+    public void setMaxCollapsedLines(int maxCollapsedLines) {
+        mMaxCollapsedLines = maxCollapsedLines;
+        requestLayout();
+        invalidate();
+    }
+
+    public boolean isCollapsed() {
+        return mCollapsed;
+    }
+
+    @VisibleForTesting
+    ValueAnimator getToggleAnimator() {
+        return mAnimator;
+    }
+
+    private void onTextStyleChanged() {
+        mLayout = null;
+        measureLabels();
+        requestLayout();
+        invalidate();
+    }
+
+    private void measureLabels() {
+        mExpandTextWidth = mExpandText == null ? 0 : mTextPaint.measureText(mExpandText);
+        mCollapseTextWidth = mCollapseText == null ? 0 : mTextPaint.measureText(mCollapseText);
+    }
+
+    @Override
+    protected void drawableStateChanged() {
+        super.drawableStateChanged();
+        if (mTextColor != null && mTextColor.isStateful()) {
+            mTextPaint.setColor(mTextColor.getColorForState(getDrawableState(), mTextColor.getDefaultColor()));
+            invalidate();
+        }
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width;
+        int textWidth;
+        if (MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.UNSPECIFIED) {
+            textWidth = mText == null ? 0 : (int) Math.ceil(Layout.getDesiredWidth(mText, mTextPaint));
+            width = textWidth + getPaddingLeft() + getPaddingRight();
+        } else {
+            width = MeasureSpec.getSize(widthMeasureSpec);
+            textWidth = Math.max(0, width - getPaddingLeft() - getPaddingRight());
+        }
+        ensureLayout(textWidth);
+        int height = getPaddingTop() + getPaddingBottom();
+        if (mLayout != null) {
+            height += getTextHeight();
+            if (isToggleVisible()) {
+                height += getIndicatorHeight();
+            }
+        }
+        setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+    }
+
+    private void ensureLayout(int width) {
+        if (mText == null) {
+            mLayout = null;
+            return;
+        }
+        if (mLayout != null && mLayout.getWidth() == width) {
+            return;
+        }
+        mLayout = new StaticLayout(mText, mTextPaint, width, Layout.Alignment.ALIGN_NORMAL,
+                mSpacingMult, mSpacingAdd, true);
+    }
+
+    private boolean isToggleVisible() {
+        return mLayout != null && mLayout.getLineCount() > mMaxCollapsedLines;
+    }
+
+    private int getFullTextHeight() {
+        return mLayout.getLineTop(mLayout.getLineCount());
+    }
+
+    private int getCollapsedTextHeight() {
+        return mLayout.getLineTop(Math.min(mLayout.getLineCount(), mMaxCollapsedLines));
+    }
+
+    /**
+     * @return the height of the text currently shown
+     */
+    private int getTextHeight() {
+        if (mAnimating) {
+            return mAnimTextHeight;
+        }
+        return mCollapsed && isToggleVisible() ? getCollapsedTextHeight() : getFullTextHeight();
+    }
+
+    private int getIndicatorHeight() {
+        if (mTextIndicator) {
+            Paint.FontMetricsInt metrics = mTextPaint.getFontMetricsInt();
+            return metrics.descent - metrics.ascent;
+        }
+        Drawable drawable = mCollapsed ? mExpandDrawable : mCollapseDrawable;
+        return drawable == null ? 0 : drawable.getIntrinsicHeight();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (mLayout == null) {
+            return;
+        }
+        int textHeight = getTextHeight();
+        canvas.save();
+        canvas.translate(getPaddingLeft(), getPaddingTop());
+        canvas.clipRect(0, 0, mLayout.getWidth(), textHeight);
+        mLayout.draw(canvas);
+        canvas.restore();
+        if (isToggleVisible()) {
+            drawIndicator(canvas, getPaddingTop() + textHeight);
+        }
+    }
+
+    /**
+     * The indicator sits right aligned below the text, where the toggle child of ExpandableTextView is
+     */
+    private void drawIndicator(Canvas canvas, int top) {
+        int right = getWidth() - getPaddingRight();
+        if (mTextIndicator) {
+            String label = mCollapsed ? mExpandText : mCollapseText;
+            float labelWidth = mCollapsed ? mExpandTextWidth : mCollapseTextWidth;
+            canvas.drawText(label, right - labelWidth, top - mTextPaint.getFontMetricsInt().ascent, mTextPaint);
+            return;
+        }
+        Drawable drawable = mCollapsed ? mExpandDrawable : mCollapseDrawable;
+        if (drawable != null) {
+            drawable.setBounds(right - drawable.getIntrinsicWidth(), top, right, top + drawable.getIntrinsicHeight());
+            drawable.draw(canvas);
+        }
+    }
+
+    @Override
+    public void onClick(View view) {
+        if (!isToggleVisible()) {
+            return;
+        }
+        mAnimStartHeight = getTextHeight();
+        mCollapsed = !mCollapsed;
+        saveCollapsedStatus();
+        mAnimEndHeight = mCollapsed ? getCollapsedTextHeight() : getFullTextHeight();
+        mAnimTextHeight = mAnimStartHeight;
+        mAnimating = true;
+        // the animator and its listeners are reused, so toggling allocates nothing
+        mAnimator.start();
+    }
+
+    private void saveCollapsedStatus() {
+        if (mCollapsedStatus != null) {
+            mCollapsedStatus.put(mPosition, mCollapsed);
+        }
+        if (mStateStore != null) {
+            mStateStore.setExpanded(mItemId, !mCollapsed);
+        }
+    }
+
+    private void endAnimation() {
+        if (mAnimating) {
+            mAnimating = false;
+            mAnimator.cancel();
+        }
+    }
+
+    private final ValueAnimator.AnimatorUpdateListener mAnimatorUpdateListener = new ValueAnimator.AnimatorUpdateListener() {
+        @Override
+        public void onAnimationUpdate(ValueAnimator animation) {
+            mAnimTextHeight = (int) ((mAnimEndHeight - mAnimStartHeight) * animation.getAnimatedFraction() + mAnimStartHeight);
+            // a single view without children, so the per-frame layout pass is cheap
+            requestLayout();
+            invalidate();
+        }
+    };
+
+    private final AnimatorListenerAdapter mAnimatorListener = new AnimatorListenerAdapter() {
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            if (!mAnimating) {
+                // cancelled by a new text
+                return;
+            }
+            mAnimating = false;
+            requestLayout();
+            invalidate();
+            if (mListener != null) {
+                mListener.onExpandStateChanged(null, !mCollapsed);
+            }
+        }
+    };
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (mAnimating) {
+            mAnimator.end();
+        }
+    }
+}
@@ -1,25 +1,35 @@
 package com.goach.simple.library;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Color;
 import android.graphics.Rect;
+import android.graphics.drawable.Animatable;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.view.ViewCompat;
 import android.text.Html;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.ImageSpan;
 import android.view.Gravity;
 import android.widget.TextView;
 
-import com.bumptech.glide.*;
 import com.bumptech.glide.load.resource.drawable.GlideDrawable;
-import com.bumptech.glide.request.animation.GlideAnimation;
-import com.bumptech.glide.request.target.SimpleTarget;
-import com.bumptech.glide.request.target.Target;
+import com.goach.simple.library.image.CoalescingImageLoader;
+import com.goach.simple.library.image.GlideImageLoader;
+import com.goach.simple.library.image.ImageLoader;
+import com.goach.simple.library.image.ImageRequest;
+import com.goach.simple.library.image.PriorityImageLoader;
 import com.goach.simple.library.utils.DrawableWrapper;
-import com.goach.simple.library.utils.GlideUtils;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
 
 /**
  * author: Goach.zhong
@@ -28,34 +38,351 @@ import java.util.Collection;
  */
 
 public class GlideImageGetter implements Html.ImageGetter, Drawable.Callback {
-    private final Collection<Target> imageTargets = new ArrayList<>();
+    /* 回收的target最多保留的个数 */
+    private static final int MAX_POOL_SIZE = 16;
+
+    private static final int DEFAULT_MAX_RUNNING_ANIMATIONS = 4;
+
+    /* 动图只在主线程开始和停止 */
+    private static int sMaxRunningAnimations = DEFAULT_MAX_RUNNING_ANIMATIONS;
+    private static int sRunningAnimations;
+    /* 可见但是因为超过上限没有播放的动图，有空位的时候按先后顺序开始 */
+    private static final List<WrapperTarget> sWaitingAnimations = new ArrayList<>();
+
+    /* 默认所有View共用一个loader，相同的图片请求会被合并，可见的图片先加载 */
+    private static ImageLoader sDefaultImageLoader;
+
+    private final Collection<WrapperTarget> imageTargets = new ArrayList<>();
+    private final Queue<WrapperTarget> mTargetPool = new ArrayDeque<>();
     private final TextView targetView;
-    private final int width;
+    private int width;
+    private Bitmap.Config mBitmapConfig = Bitmap.Config.ARGB_8888;
+    private AspectRatioProvider mAspectRatioProvider;
+    private int mVisibleTextEnd = Integer.MAX_VALUE;
+    private boolean mAttached;
+    private ImageLoader mImageLoader = getDefaultImageLoader();
+    private boolean mPreview;
+    private float mThumbnailScale;
+    private ThumbnailUrlProvider mThumbnailUrlProvider;
+    /* 当前显示的图片占用的内存 */
+    private long mByteCount;
+    private boolean mEvicted;
+    /* 被释放的图片等到绘制之后再检查要不要重新加载 */
+    private boolean mReloadPosted;
     private final Context mCtx;
 
+    /**
+     * @param width - 图片显示的宽度，小于等于0的时候等到setWidth之后再开始解码
+     */
     public GlideImageGetter(Context ctx, TextView targetView, int width) {
         this.mCtx = ctx;
         this.targetView = targetView;
         this.width = width;
+        this.mAttached = ViewCompat.isAttachedToWindow(targetView);
         targetView.setTag(this);
     }
 
     @Override
     public Drawable getDrawable(String url) {
-        WrapperTarget imageTarget = new WrapperTarget(width);
-        Drawable asyncWrapper = imageTarget.getLazyDrawable();
-        asyncWrapper.setCallback(this);
-        GlideUtils.getInstance().loadDrawable(mCtx,url,imageTarget);
+        WrapperTarget imageTarget = obtainTarget(url, 0,
+                mAspectRatioProvider == null ? 0f : mAspectRatioProvider.getAspectRatio(url));
+        imageTarget.load();
+        return imageTarget.getLazyDrawable();
+    }
+
+    /**
+     * @param spanStart - where the image sits in the text, images past the visible end load later
+     * @param aspectRatio - height / width of the image if known up front, its bounds are then
+     *                    reserved right away and the image arriving doesn't change the layout
+     */
+    private WrapperTarget obtainTarget(String url, int spanStart, float aspectRatio) {
+        WrapperTarget imageTarget = mTargetPool.poll();
+        if (imageTarget == null) {
+            imageTarget = new WrapperTarget();
+            imageTarget.getLazyDrawable().setCallback(this);
+        }
+        imageTarget.reset(url, spanStart, aspectRatio);
         imageTargets.add(imageTarget);
-        return asyncWrapper;
+        return imageTarget;
+    }
+
+    /**
+     * 只加载显示区域内的图片，收起状态下超出maxCollapsedLines的图片等展开之后再加载
+     *
+     * @param end - the text offset where the visible text ends, Integer.MAX_VALUE if all of it is visible
+     */
+    public void setVisibleTextEnd(int end) {
+        mVisibleTextEnd = end;
+        for (WrapperTarget target : imageTargets) {
+            if (target.mSpanStart < end) {
+                target.load();
+                if (!isPreviewEnabled()) {
+                    target.upgrade();
+                }
+                target.updatePriority();
+            }
+            target.updateAnimation();
+        }
+    }
+
+    /**
+     * 预览模式，比如收起的时候，图片先加载小图，关掉之后显示区域内的小图换成原图。
+     * 需要设置了setThumbnailScale或者ThumbnailUrlProvider才有效
+     */
+    public void setPreview(boolean preview) {
+        if (mPreview == preview) {
+            return;
+        }
+        mPreview = preview;
+        if (!preview) {
+            setVisibleTextEnd(mVisibleTextEnd);
+        }
+    }
+
+    /**
+     * @param scale - the thumbnail width relative to the display width, e.g. 0.25f.
+     *              0 disables the downscaled thumbnails, which is the default.
+     */
+    public void setThumbnailScale(float scale) {
+        mThumbnailScale = scale;
+    }
+
+    /**
+     * 提供小图的url，比如服务端生成的缩略图，优先于setThumbnailScale
+     */
+    public void setThumbnailUrlProvider(@Nullable ThumbnailUrlProvider provider) {
+        mThumbnailUrlProvider = provider;
+    }
+
+    private boolean isPreviewEnabled() {
+        return mPreview && (mThumbnailScale > 0 || mThumbnailUrlProvider != null);
+    }
+
+    /**
+     * 所有View同时播放的动图个数上限，默认{@value #DEFAULT_MAX_RUNNING_ANIMATIONS}
+     */
+    public static void setMaxRunningAnimations(int max) {
+        sMaxRunningAnimations = max;
+        startWaitingAnimations();
+    }
+
+    public static int getRunningAnimationCount() {
+        return sRunningAnimations;
+    }
+
+    /**
+     * 空出来的位置给等着的动图
+     */
+    private static void startWaitingAnimations() {
+        while (sRunningAnimations < sMaxRunningAnimations && !sWaitingAnimations.isEmpty()) {
+            // a target that is no longer visible just drops out of the queue
+            sWaitingAnimations.remove(0).updateAnimation();
+        }
+    }
+
+    /**
+     * @return the loader shared by all getters, Glide with request coalescing and
+     * visible-first scheduling unless replaced
+     */
+    @NonNull
+    public static ImageLoader getDefaultImageLoader() {
+        if (sDefaultImageLoader == null) {
+            sDefaultImageLoader = new CoalescingImageLoader(new PriorityImageLoader(new GlideImageLoader()));
+        }
+        return sDefaultImageLoader;
+    }
+
+    /**
+     * 替换默认的图片加载，只影响之后创建的GlideImageGetter
+     */
+    public static void setDefaultImageLoader(@NonNull ImageLoader loader) {
+        sDefaultImageLoader = loader;
+    }
+
+    /**
+     * 设置这个getter的图片加载，已经加载的图片会重新加载
+     */
+    public void setImageLoader(@NonNull ImageLoader loader) {
+        if (mImageLoader == loader) {
+            return;
+        }
+        for (WrapperTarget target : imageTargets) {
+            target.release();
+        }
+        mImageLoader = loader;
+        setVisibleTextEnd(mVisibleTextEnd);
     }
 
+    /**
+     * 设置图片显示的宽度，图片按这个宽度解码，一般是TextView去掉padding之后的宽度
+     */
+    public void setWidth(int width) {
+        if (width <= 0 || this.width == width) {
+            return;
+        }
+        this.width = width;
+        boolean reserved = false;
+        for (WrapperTarget target : imageTargets) {
+            reserved |= target.reserveBounds();
+        }
+        if (reserved && targetView.getParent() instanceof ExpandableTextView) {
+            ((ExpandableTextView) targetView.getParent()).scheduleRelayout();
+        }
+        // 宽度确定之后才开始加载
+        setVisibleTextEnd(mVisibleTextEnd);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @param config - Bitmap.Config.RGB_565 halves the memory of opaque images
+     */
+    public void setBitmapConfig(@NonNull Bitmap.Config config) {
+        mBitmapConfig = config;
+    }
+
+    /**
+     * 把HtmlParser解析出来的占位图片替换成真正加载的图片，需要在主线程调用
+     */
+    public CharSequence bind(@NonNull Spanned parsed) {
+        // 上一次内容的图片不会再显示了，回收掉
+        clear();
+        return bindAppended(parsed, 0);
+    }
+
+    /**
+     * 和bind一样，但是保留已经绑定的图片，用于追加到现有文字后面的内容
+     *
+     * @param offset - where the appended text starts in the TextView
+     */
+    public CharSequence bindAppended(@NonNull Spanned parsed, int offset) {
+        ImageSpan[] spans = parsed.getSpans(0, parsed.length(), ImageSpan.class);
+        if (spans.length == 0) {
+            return parsed;
+        }
+        SpannableStringBuilder builder = new SpannableStringBuilder(parsed);
+        for (ImageSpan span : spans) {
+            int start = builder.getSpanStart(span);
+            int end = builder.getSpanEnd(span);
+            int flags = builder.getSpanFlags(span);
+            builder.removeSpan(span);
+            WrapperTarget target = obtainTarget(span.getSource(), offset + start, getAspectRatio(span));
+            builder.setSpan(new ImageSpan(target.getLazyDrawable(), span.getSource()), start, end, flags);
+        }
+        setVisibleTextEnd(mVisibleTextEnd);
+        return builder;
+    }
+
+    /**
+     * 图片的宽高比，优先用<img>的width/height属性，没有的话用AspectRatioProvider
+     */
+    private float getAspectRatio(ImageSpan span) {
+        Drawable placeholder = span.getDrawable();
+        if (placeholder instanceof HtmlParser.ImagePlaceholder) {
+            float aspectRatio = ((HtmlParser.ImagePlaceholder) placeholder).getAspectRatio();
+            if (aspectRatio > 0) {
+                return aspectRatio;
+            }
+        }
+        return mAspectRatioProvider == null ? 0f : mAspectRatioProvider.getAspectRatio(span.getSource());
+    }
+
+    /**
+     * 提供图片的宽高比，用来在图片加载之前就确定好图片占的位置，避免加载完成后内容跳动
+     */
+    public void setAspectRatioProvider(@Nullable AspectRatioProvider provider) {
+        mAspectRatioProvider = provider;
+    }
+
+    /**
+     * 释放所有图片，target放回复用池
+     */
     public void clear() {
-        for (Target target : imageTargets) {
-            Glide.clear(target);
+        for (WrapperTarget target : imageTargets) {
+            target.release();
+            if (mTargetPool.size() < MAX_POOL_SIZE) {
+                mTargetPool.add(target);
+            }
+        }
+        imageTargets.clear();
+    }
+
+    /**
+     * View detach的时候释放图片，target保留，attach之后通过setVisibleTextEnd重新加载
+     */
+    public void onDetached() {
+        mAttached = false;
+        if (mReloadPosted) {
+            mReloadPosted = false;
+            targetView.removeCallbacks(mReloadRunnable);
+        }
+        for (WrapperTarget target : imageTargets) {
+            target.release();
+        }
+    }
+
+    public void onAttached() {
+        mAttached = true;
+        mEvicted = false;
+        setVisibleTextEnd(mVisibleTextEnd);
+    }
+
+    /**
+     * TextView绘制的时候调用。被ImageMemoryBudget释放掉的图片不在绘制里加载，
+     * post到绘制之后，预算有空间的时候才重新加载，attach的时候也会重新加载
+     */
+    public void onDraw() {
+        ImageMemoryBudget.getInstance().touch(this);
+        if (mEvicted && !mReloadPosted) {
+            mReloadPosted = true;
+            targetView.post(mReloadRunnable);
         }
     }
 
+    private final Runnable mReloadRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mReloadPosted = false;
+            // without room the images would just evict others, the next draw checks again
+            if (mEvicted && mAttached && ImageMemoryBudget.getInstance().hasRoom(GlideImageGetter.this)) {
+                mEvicted = false;
+                setVisibleTextEnd(mVisibleTextEnd);
+            }
+        }
+    };
+
+    /**
+     * @return the bytes of the images currently shown
+     */
+    public long getByteCount() {
+        return mByteCount;
+    }
+
+    boolean isAttached() {
+        return mAttached;
+    }
+
+    boolean isVisible(Rect rect) {
+        return targetView.isShown() && targetView.getGlobalVisibleRect(rect);
+    }
+
+    /**
+     * 超出内存预算的时候释放图片，位置保留，下次显示的时候重新加载
+     */
+    void evict() {
+        for (WrapperTarget target : imageTargets) {
+            target.release();
+        }
+        mEvicted = true;
+    }
+
+    private void onByteCountChanged(long delta) {
+        mByteCount += delta;
+        ImageMemoryBudget.getInstance().charge(this, delta);
+    }
+
     public static void clear(TextView view) {
         view.setText(null);
         Object tag = view.getTag();
@@ -66,6 +393,9 @@ public class GlideImageGetter implements Html.ImageGetter, Drawable.Callback {
     }
     @Override
     public void invalidateDrawable(@NonNull Drawable who) {
+        if (!mAttached) {
+            return;
+        }
         targetView.invalidate();
     }
     @Override
@@ -77,49 +407,289 @@ public class GlideImageGetter implements Html.ImageGetter, Drawable.Callback {
 
     }
 
-    public class WrapperTarget extends SimpleTarget<GlideDrawable> {
+    private static boolean isAnimated(Drawable drawable) {
+        if (drawable instanceof GlideDrawable) {
+            return ((GlideDrawable) drawable).isAnimated();
+        }
+        return drawable instanceof Animatable;
+    }
+
+    public interface AspectRatioProvider {
+        /**
+         * @return height / width of the image at the url, 0 or less if unknown
+         */
+        float getAspectRatio(String url);
+    }
+
+    public interface ThumbnailUrlProvider {
+        /**
+         * @return the url of a smaller version of the image, null to downscale the image itself
+         */
+        @Nullable
+        String getThumbnailUrl(String url);
+    }
+
+    public class WrapperTarget {
         private final ColorDrawable nullObject = new ColorDrawable(Color.TRANSPARENT);
         private final DrawableWrapper wrapper = new DrawableWrapper(null);
-        private int mWidth;
-        public WrapperTarget(int width) {
-            super();
+        /* 收起状态下先加载的小图，展开之后换成原图 */
+        private final Load mThumbnail = new Load();
+        private final Load mFull = new Load();
+        private String mUrl;
+        private int mSpanStart;
+        private float mAspectRatio;
+        private Drawable mResource;
+        private Load mShown;
+        private long mBytes;
+        private boolean mAnimating;
+        public WrapperTarget() {
             setDrawable(null);
-            this.mWidth = width;
         }
 
-        public Drawable getLazyDrawable() {
-            return wrapper;
+        /**
+         * target会被复用，绑定新的图片之前重置状态
+         */
+        void reset(String url, int spanStart, float aspectRatio) {
+            this.mUrl = url;
+            this.mSpanStart = spanStart;
+            this.mAspectRatio = aspectRatio;
+            release();
+            wrapper.setBounds(0, 0, 0, 0);
+            setDrawable(null);
+            reserveBounds();
         }
 
-        @Override
-        public void onLoadStarted(Drawable placeholder) {
-            setDrawable(placeholder);
+        /**
+         * 宽高比已知的时候提前占好位置
+         *
+         * @return true if the bounds changed
+         */
+        boolean reserveBounds() {
+            if (mAspectRatio <= 0 || width <= 0) {
+                return false;
+            }
+            int height = (int) (width * mAspectRatio);
+            Rect bounds = wrapper.getBounds();
+            if (bounds.width() == width && bounds.height() == height) {
+                return false;
+            }
+            wrapper.setBounds(0, 0, width, height);
+            setDrawable(wrapper.getWrappedDrawable());
+            return true;
         }
 
+        /**
+         * 按显示宽度解码，高度按图片比例，宽度还没确定的时候先等着。
+         * 预览模式下先加载小图
+         */
+        void load() {
+            if (mThumbnail.mStarted || mFull.mStarted || width <= 0 || mUrl == null) {
+                return;
+            }
+            if (isPreviewEnabled()) {
+                String thumbnailUrl = mThumbnailUrlProvider == null ? null : mThumbnailUrlProvider.getThumbnailUrl(mUrl);
+                if (thumbnailUrl != null) {
+                    mThumbnail.start(thumbnailUrl, width);
+                    return;
+                }
+                if (mThumbnailScale > 0) {
+                    mThumbnail.start(mUrl, Math.max(1, Math.round(width * mThumbnailScale)));
+                    return;
+                }
+            }
+            mFull.start(mUrl, width);
+        }
 
-        @Override
-        public void onLoadFailed(Exception e, Drawable errorDrawable) {
-            setDrawable(errorDrawable);
+        /**
+         * 小图换成原图，原图加载好之前继续显示小图
+         */
+        void upgrade() {
+            if (mThumbnail.mStarted && !mFull.mStarted) {
+                mFull.start(mUrl, width);
+            }
         }
 
-        @Override
-        public void onResourceReady(GlideDrawable glideDrawable, GlideAnimation glideAnimation) {
-            glideDrawable.setLoopCount(GlideDrawable.LOOP_FOREVER);
-            glideDrawable.start();
+        /**
+         * 绑定的时候item可能还没attach，比如RecyclerView预取，attach之后提高优先级
+         */
+        void updatePriority() {
+            mThumbnail.updatePriority();
+            mFull.updatePriority();
+        }
+
+        private int getPriority() {
+            return mAttached && mSpanStart < mVisibleTextEnd ? ImageRequest.PRIORITY_HIGH : ImageRequest.PRIORITY_LOW;
+        }
+
+        /**
+         * 取消加载并释放图片，之后还可以再load
+         */
+        void release() {
+            mThumbnail.cancel();
+            mFull.cancel();
+            sWaitingAnimations.remove(this);
+            stopAnimation();
+            mShown = null;
+            if (mResource != null) {
+                mResource = null;
+                setDrawable(null);
+            }
+            setBytes(0);
+        }
+
+        private void setBytes(long bytes) {
+            long delta = bytes - mBytes;
+            mBytes = bytes;
+            if (delta != 0) {
+                onByteCountChanged(delta);
+            }
+        }
+
+        public Drawable getLazyDrawable() {
+            return wrapper;
+        }
+
+        private void onResourceReady(Load load, @NonNull Drawable glideDrawable) {
+            if (load == mThumbnail && mShown == mFull) {
+                return;
+            }
+            stopAnimation();
+            mResource = glideDrawable;
+            mShown = load;
+            setBytes(ImageMemoryBudget.sizeOf(glideDrawable));
+            if (load == mFull) {
+                // 原图好了，小图不再需要
+                mThumbnail.cancel();
+            }
+            if (glideDrawable instanceof GlideDrawable) {
+                ((GlideDrawable) glideDrawable).setLoopCount(GlideDrawable.LOOP_FOREVER);
+            }
+            updateAnimation();
+            if(mAspectRatio > 0 && wrapper.getBounds().width() == width){
+                // 位置已经提前占好了，只需要重绘
+                setDrawable(glideDrawable);
+                return;
+            }
             float scale = 1;
             if(glideDrawable.getIntrinsicWidth() > 0){
                 scale = glideDrawable.getIntrinsicHeight()*1.0f/glideDrawable.getIntrinsicWidth();
             }
-            wrapper.setBounds(0,0,mWidth, (int) (mWidth*scale));//这里设置防止和文字重叠
+            int height = (int) (width*scale);
+            Rect bounds = wrapper.getBounds();
+            if(bounds.width() == width && bounds.height() == height){
+                // 重新attach之后从缓存加载，位置没变
+                setDrawable(glideDrawable);
+                return;
+            }
+            wrapper.setBounds(0,0,width, height);//这里设置防止和文字重叠
             if(targetView.getParent() instanceof ExpandableTextView){
-                ((ExpandableTextView)targetView.getParent()).resetMeasure();
+                ((ExpandableTextView)targetView.getParent()).scheduleRelayout();
             }
             setDrawable(glideDrawable);
         }
 
-        @Override
-        public void onLoadCleared(Drawable placeholder) {
-            setDrawable(placeholder);
+        /**
+         * 动图只在可见的时候播放，同时播放的个数不超过sMaxRunningAnimations，
+         * 超过的排队等别的动图停下来
+         */
+        void updateAnimation() {
+            boolean visible = isAnimated(mResource) && mAttached && mSpanStart < mVisibleTextEnd;
+            if (!visible) {
+                sWaitingAnimations.remove(this);
+                stopAnimation();
+            } else if (!mAnimating) {
+                if (sRunningAnimations < sMaxRunningAnimations) {
+                    sWaitingAnimations.remove(this);
+                    mAnimating = true;
+                    sRunningAnimations++;
+                    ((Animatable) mResource).start();
+                } else if (!sWaitingAnimations.contains(this)) {
+                    sWaitingAnimations.add(this);
+                }
+            }
+        }
+
+        private void stopAnimation() {
+            if (!mAnimating) {
+                return;
+            }
+            mAnimating = false;
+            sRunningAnimations--;
+            if (mResource instanceof Animatable) {
+                ((Animatable) mResource).stop();
+            }
+            startWaitingAnimations();
+        }
+
+        /**
+         * 一次图片请求，小图和原图各一个，两个可以同时进行
+         */
+        private final class Load implements ImageLoader.Callback {
+            private boolean mStarted;
+            private int mPriority;
+
+            void start(String url, int requestWidth) {
+                mStarted = true;
+                mPriority = getPriority();
+                mImageLoader.load(mCtx, new ImageRequest(url, requestWidth, getRequestHeight(requestWidth),
+                        mBitmapConfig, mPriority), this);
+            }
+
+            /**
+             * 高度按宽高比算，不知道宽高比的时候和宽度一样，这样Glide解码的时候就会按比例缩小，
+             * 而不是按原图解码之后再缩小
+             */
+            private int getRequestHeight(int requestWidth) {
+                return mAspectRatio > 0 ? Math.max(1, Math.round(requestWidth * mAspectRatio)) : requestWidth;
+            }
+
+            void cancel() {
+                if (mStarted) {
+                    mStarted = false;
+                    mImageLoader.cancel(this);
+                }
+            }
+
+            void updatePriority() {
+                int priority = getPriority();
+                if (mStarted && mShown != this && priority != mPriority) {
+                    mPriority = priority;
+                    mImageLoader.setPriority(this, priority);
+                }
+            }
+
+            @Override
+            public void onLoadStarted(Drawable placeholder) {
+                if (mShown == null) {
+                    setDrawable(placeholder);
+                }
+            }
+
+            @Override
+            public void onResourceReady(@NonNull Drawable resource) {
+                WrapperTarget.this.onResourceReady(this, resource);
+            }
+
+            @Override
+            public void onLoadFailed(Drawable errorDrawable) {
+                // 原图失败的时候继续显示小图
+                if (mShown == null) {
+                    setDrawable(errorDrawable);
+                }
+            }
+
+            @Override
+            public void onLoadCleared(Drawable placeholder) {
+                // 被loader释放了，比如Activity销毁，下次可见的时候重新加载
+                mStarted = false;
+                if (mShown == this) {
+                    stopAnimation();
+                    mShown = null;
+                    mResource = null;
+                    setDrawable(placeholder);
+                    setBytes(0);
+                }
+            }
         }
 
         private void setDrawable(Drawable drawable) {
@@ -0,0 +1,296 @@
+package com.goach.simple.library;
+
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.Html;
+import android.text.Spanned;
+import android.text.TextUtils;
+import android.text.style.ImageSpan;
+
+import java.util.concurrent.Executor;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * author: Goach.zhong
+ * Date: 2026/10/18 10:12.
+ * Des:Html解析，可以在任意线程调用。结果中的<img>只是占位的ImageSpan，
+ * 需要在主线程通过GlideImageGetter#bind绑定真正的图片
+ */
+public final class HtmlParser {
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private static volatile Executor sExecutor = AsyncTask.THREAD_POOL_EXECUTOR;
+
+    private static final Pattern IMG_TAG = Pattern.compile("<img\\b[^>]*>", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern ATTRIBUTE = Pattern.compile(
+            "([a-zA-Z-]+)\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)'|([^\\s>]+))");
+
+    private HtmlParser() {
+    }
+
+    /**
+     * Sets the executor used by {@link #parseAsync(CharSequence, Callback)}.
+     * Defaults to {@link AsyncTask#THREAD_POOL_EXECUTOR}.
+     */
+    public static void setExecutor(@NonNull Executor executor) {
+        sExecutor = executor;
+    }
+
+    /**
+     * Parses the html source, consulting {@link SpannedCache} first. Safe to call from any thread.
+     *
+     * @return the parsed text, {@code null} if the source is empty
+     */
+    @Nullable
+    public static Spanned parse(@Nullable CharSequence source) {
+        if (TextUtils.isEmpty(source)) {
+            return null;
+        }
+        SpannedCache cache = SpannedCache.getInstance();
+        if (cache == null) {
+            return fromHtml(source);
+        }
+        String html = source.toString();
+        Spanned parsed = cache.get(html);
+        if (parsed == null) {
+            parsed = fromHtml(html);
+            cache.putParsed(html, parsed);
+        }
+        return parsed;
+    }
+
+    /**
+     * Parses a chunk of html without caching it, for content that is appended piece by piece
+     *
+     * @return the parsed text, {@code null} if the source is empty
+     */
+    @Nullable
+    public static Spanned parseFragment(@Nullable CharSequence source) {
+        return TextUtils.isEmpty(source) ? null : fromHtml(source);
+    }
+
+    /**
+     * Parses just enough of the html to show its first maxTextLength chars, for the collapsed lines
+     * of a huge post. A short source, a cached one or one LiteHtmlParser can't handle is parsed
+     * in full. Safe to call from any thread.
+     *
+     * @return the preview, {@code null} if the source is empty
+     */
+    @Nullable
+    public static Preview parsePreview(@Nullable CharSequence source, int maxTextLength) {
+        if (TextUtils.isEmpty(source)) {
+            return null;
+        }
+        SpannedCache cache = SpannedCache.getInstance();
+        String html = source.toString();
+        Spanned cached = cache == null ? null : cache.get(html);
+        if (cached != null) {
+            return new Preview(cached, false);
+        }
+        // the text is never longer than its source
+        Preview preview = source.length() <= maxTextLength ? null : LiteHtmlParser.parsePrefix(source, maxTextLength);
+        if (preview == null) {
+            // parsed in full, the cache was already looked up
+            preview = new Preview(fromHtml(source), false);
+        }
+        if (!preview.isTruncated() && cache != null) {
+            cache.putParsed(html, preview.getParsed());
+        }
+        return preview;
+    }
+
+    /**
+     * The common tags are parsed in a single pass by LiteHtmlParser, anything else goes
+     * through Html.fromHtml
+     */
+    private static Spanned fromHtml(CharSequence source) {
+        Spanned parsed = LiteHtmlParser.parse(source);
+        if (parsed != null) {
+            return parsed;
+        }
+        String html = source.toString();
+        return Html.fromHtml(html, new PlaceholderGetter(html), null);
+    }
+
+    /**
+     * Parses the html source on the configured executor and delivers the result on the main thread.
+     *
+     * @return the task, which can be cancelled when the result is no longer wanted
+     */
+    @NonNull
+    public static ParseTask parseAsync(@Nullable CharSequence source, @NonNull Callback callback) {
+        ParseTask task = new ParseTask(source, callback);
+        sExecutor.execute(task);
+        return task;
+    }
+
+    static boolean hasImages(@Nullable Spanned parsed) {
+        return parsed != null && parsed.getSpans(0, parsed.length(), ImageSpan.class).length > 0;
+    }
+
+    /**
+     * The drawable of a parsed <img>, carries the size from its width/height attributes
+     */
+    static final class ImagePlaceholder extends ColorDrawable {
+        private final int mWidth;
+        private final int mHeight;
+
+        ImagePlaceholder(int width, int height) {
+            super(Color.TRANSPARENT);
+            mWidth = width;
+            mHeight = height;
+        }
+
+        @Override
+        public int getIntrinsicWidth() {
+            return mWidth;
+        }
+
+        @Override
+        public int getIntrinsicHeight() {
+            return mHeight;
+        }
+
+        /**
+         * @return height / width from the attributes, 0 if unknown
+         */
+        float getAspectRatio() {
+            return mWidth > 0 && mHeight > 0 ? mHeight * 1f / mWidth : 0f;
+        }
+    }
+
+    /**
+     * Html.fromHtml only hands the src to the getter, so the width/height attributes are
+     * read from the source. The getter is called in document order, so the tags are scanned
+     * along with it. Never touches Glide, parsing can run off the main thread.
+     */
+    private static final class PlaceholderGetter implements Html.ImageGetter {
+        private final Matcher mTagMatcher;
+
+        PlaceholderGetter(String html) {
+            mTagMatcher = IMG_TAG.matcher(html);
+        }
+
+        @Override
+        public Drawable getDrawable(String source) {
+            if (!mTagMatcher.find()) {
+                return new ImagePlaceholder(0, 0);
+            }
+            int width = 0;
+            int height = 0;
+            Matcher attributes = ATTRIBUTE.matcher(mTagMatcher.group());
+            while (attributes.find()) {
+                String name = attributes.group(1);
+                String value = attributes.group(2) != null ? attributes.group(2)
+                        : attributes.group(3) != null ? attributes.group(3) : attributes.group(4);
+                if ("width".equalsIgnoreCase(name)) {
+                    width = parsePixels(value);
+                } else if ("height".equalsIgnoreCase(name)) {
+                    height = parsePixels(value);
+                }
+            }
+            return new ImagePlaceholder(width, height);
+        }
+
+    }
+
+    /**
+     * "120" or "120px", percentages are unknown sizes
+     */
+    static int parsePixels(@Nullable String value) {
+        if (value == null) {
+            return 0;
+        }
+        int result = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                result = result * 10 + (c - '0');
+            } else if (c == '%') {
+                return 0;
+            } else {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The result of {@link #parsePreview}, the beginning of the text when it was truncated
+     */
+    public static final class Preview {
+        private final Spanned mParsed;
+        private final boolean mTruncated;
+
+        Preview(@NonNull Spanned parsed, boolean truncated) {
+            mParsed = parsed;
+            mTruncated = truncated;
+        }
+
+        @NonNull
+        public Spanned getParsed() {
+            return mParsed;
+        }
+
+        /**
+         * @return true if only a prefix of the source was parsed
+         */
+        public boolean isTruncated() {
+            return mTruncated;
+        }
+    }
+
+    public interface Callback {
+        /**
+         * Called on the main thread once the source has been parsed
+         *
+         * @param source - the html source passed to parseAsync
+         * @param parsed - the parsed text, null if the source is empty
+         */
+        void onParsed(@Nullable CharSequence source, @Nullable Spanned parsed);
+    }
+
+    public static final class ParseTask implements Runnable {
+        private final CharSequence mSource;
+        private final Callback mCallback;
+        private volatile boolean mCancelled;
+
+        ParseTask(CharSequence source, Callback callback) {
+            mSource = source;
+            mCallback = callback;
+        }
+
+        public void cancel() {
+            mCancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        @Override
+        public void run() {
+            if (mCancelled) {
+                return;
+            }
+            final Spanned parsed = parse(mSource);
+            sMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!mCancelled) {
+                        mCallback.onParsed(mSource, parsed);
+                    }
+                }
+            });
+        }
+    }
+}
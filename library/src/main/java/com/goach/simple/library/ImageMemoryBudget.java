@@ -0,0 +1,219 @@
+package com.goach.simple.library;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.bumptech.glide.load.resource.bitmap.GlideBitmapDrawable;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.WeakHashMap;
+
+/**
+ * author: Goach.zhong
+ * Date: 2026/10/19 19:10.
+ * Des:所有RichTextView图片占用内存的上限。超出的时候先释放detach的View的图片，
+ * 再释放最久没有显示过的View的图片，被释放的图片下次显示的时候重新加载。
+ * 同一个Bitmap被多个View共用的时候每个View都会算一次，所以统计的是上限。只在主线程使用
+ */
+public class ImageMemoryBudget {
+
+    /* The default budget, an eighth of the heap */
+    private static final int DEFAULT_HEAP_FRACTION = 8;
+
+    private static ImageMemoryBudget sInstance =
+            new ImageMemoryBudget(Runtime.getRuntime().maxMemory() / DEFAULT_HEAP_FRACTION);
+
+    /* The getters holding images, in least recently drawn order. Held weakly, so a view dropped
+     * without being detached or cleared isn't kept alive by the budget */
+    private final LinkedHashMap<Holder, Boolean> mHolders = new LinkedHashMap<>(16, 0.75f, true);
+    private final WeakHashMap<GlideImageGetter, Holder> mHoldersByGetter = new WeakHashMap<>();
+    private final Rect mVisibleRect = new Rect();
+    private long mMaxBytes;
+    private long mUsedBytes;
+    private long mPeakBytes;
+    private long mEvictedBytes;
+    private int mEvictionCount;
+
+    /**
+     * @param maxBytes - the budget, 0 or less for no limit
+     */
+    public ImageMemoryBudget(long maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    @NonNull
+    public static ImageMemoryBudget getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * @param maxBytes - the process-wide budget, 0 or less for no limit
+     */
+    public void setMaxBytes(long maxBytes) {
+        mMaxBytes = maxBytes;
+        trim(null);
+    }
+
+    public long getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    /**
+     * @return the bytes of the images currently shown by all getters
+     */
+    public long getUsedBytes() {
+        return mUsedBytes;
+    }
+
+    public long getPeakBytes() {
+        return mPeakBytes;
+    }
+
+    /**
+     * @return the bytes released to stay within the budget so far
+     */
+    public long getEvictedBytes() {
+        return mEvictedBytes;
+    }
+
+    /**
+     * @return how many times the images of a getter were released to stay within the budget
+     */
+    public int getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    /**
+     * Called when the images held by the getter change, may evict the images of other getters
+     */
+    void charge(@NonNull GlideImageGetter getter, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        mUsedBytes += delta;
+        mPeakBytes = Math.max(mPeakBytes, mUsedBytes);
+        Holder holder = mHoldersByGetter.get(getter);
+        if (getter.getByteCount() > 0) {
+            if (holder == null) {
+                holder = new Holder(getter);
+                mHoldersByGetter.put(getter, holder);
+            }
+            holder.mBytes = getter.getByteCount();
+            mHolders.put(holder, Boolean.TRUE);
+        } else if (holder != null) {
+            mHoldersByGetter.remove(getter);
+            mHolders.remove(holder);
+        }
+        if (delta > 0) {
+            trim(getter);
+        }
+    }
+
+    /**
+     * Marks the getter as the most recently visible one
+     */
+    void touch(@NonNull GlideImageGetter getter) {
+        Holder holder = mHoldersByGetter.get(getter);
+        if (holder != null) {
+            mHolders.get(holder);
+        }
+    }
+
+    /**
+     * @return true if the images of the getter can be loaded within the budget, by evicting the
+     * images of detached or offscreen views if needed
+     */
+    boolean hasRoom(@NonNull GlideImageGetter getter) {
+        if (mMaxBytes <= 0 || mUsedBytes < mMaxBytes) {
+            return true;
+        }
+        for (Holder holder : mHolders.keySet()) {
+            GlideImageGetter other = holder.mGetter.get();
+            if (other != null && other != getter && (!other.isAttached() || !other.isVisible(mVisibleRect))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void trim(@Nullable GlideImageGetter keep) {
+        if (mMaxBytes <= 0 || mUsedBytes <= mMaxBytes) {
+            return;
+        }
+        // detached views first, then the ones offscreen, the least recently drawn first
+        List<GlideImageGetter> detached = new ArrayList<>();
+        List<GlideImageGetter> hidden = new ArrayList<>();
+        Iterator<Holder> iterator = mHolders.keySet().iterator();
+        while (iterator.hasNext()) {
+            Holder holder = iterator.next();
+            GlideImageGetter getter = holder.mGetter.get();
+            if (getter == null) {
+                // collected without releasing its images, they are gone with it
+                iterator.remove();
+                mUsedBytes -= holder.mBytes;
+                continue;
+            }
+            if (getter == keep) {
+                continue;
+            }
+            if (!getter.isAttached()) {
+                detached.add(getter);
+            } else if (!getter.isVisible(mVisibleRect)) {
+                hidden.add(getter);
+            }
+        }
+        evict(detached);
+        evict(hidden);
+    }
+
+    private void evict(List<GlideImageGetter> getters) {
+        for (GlideImageGetter getter : getters) {
+            if (mUsedBytes <= mMaxBytes) {
+                return;
+            }
+            long bytes = getter.getByteCount();
+            getter.evict();
+            mEvictedBytes += bytes;
+            mEvictionCount++;
+        }
+    }
+
+    /**
+     * @return the bytes of the bitmap behind the drawable, an estimate for other drawables
+     */
+    static long sizeOf(@Nullable Drawable drawable) {
+        if (drawable == null) {
+            return 0;
+        }
+        Bitmap bitmap = null;
+        if (drawable instanceof BitmapDrawable) {
+            bitmap = ((BitmapDrawable) drawable).getBitmap();
+        } else if (drawable instanceof GlideBitmapDrawable) {
+            bitmap = ((GlideBitmapDrawable) drawable).getBitmap();
+        }
+        if (bitmap != null) {
+            return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+                    ? bitmap.getAllocationByteCount() : bitmap.getByteCount();
+        }
+        return (long) Math.max(0, drawable.getIntrinsicWidth()) * Math.max(0, drawable.getIntrinsicHeight()) * 4;
+    }
+
+    private static final class Holder {
+        final WeakReference<GlideImageGetter> mGetter;
+        /* The bytes of the getter at its last charge, released if it is collected */
+        long mBytes;
+
+        Holder(GlideImageGetter getter) {
+            mGetter = new WeakReference<>(getter);
+        }
+    }
+}
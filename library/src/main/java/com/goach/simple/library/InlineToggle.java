@@ -0,0 +1,186 @@
+package com.goach.simple.library;
+
+import android.support.annotation.ColorInt;
+import android.support.annotation.NonNull;
+import android.text.Layout;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.TextPaint;
+import android.text.Selection;
+import android.text.Spannable;
+import android.text.TextUtils;
+import android.text.method.LinkMovementMethod;
+import android.text.style.ClickableSpan;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.TextView;
+
+/**
+ * author: Goach.zhong
+ * Date: 2026/10/19 23:20.
+ * Des:展开收起的提示作为可点击的span接在文字后面，收起的时候最后一行省略。
+ * 根据onMeasure里已经排好的Layout直接生成，不需要post和负的topMargin。
+ * 提示文字的宽度每次measure按画笔样式检查一次，样式没变就不重新测量。
+ * 点击只对提示的span生效，html里的链接和没有内嵌提示的时候一样不可点击
+ */
+final class InlineToggle {
+
+    private static final String ELLIPSIS = "\u2026";
+
+    private final String mExpandLabel;
+    private final String mCollapseLabel;
+    private final ToggleSpan mSpan;
+
+    /* The label widths and the paint style they were measured with */
+    private boolean mWidthsMeasured;
+    private int mWidthsStyleHash;
+    private float mExpandWidth;
+    private float mCollapseWidth;
+    private float mEllipsisWidth;
+
+    InlineToggle(@NonNull String expandLabel, @NonNull String collapseLabel, @ColorInt int color,
+                 @NonNull View.OnClickListener listener) {
+        mExpandLabel = expandLabel;
+        mCollapseLabel = collapseLabel;
+        mSpan = new ToggleSpan(color, listener);
+    }
+
+    /**
+     * Measures the labels with the paint of the current measure, only again once its style changed.
+     * Called before {@link #collapse} and {@link #getExpandedHeight}.
+     */
+    void measureLabels(@NonNull TextPaint paint) {
+        int styleHash = LayoutMetricsCache.styleHash(paint, 1f, 0f, true);
+        if (mWidthsMeasured && styleHash == mWidthsStyleHash) {
+            return;
+        }
+        mWidthsMeasured = true;
+        mWidthsStyleHash = styleHash;
+        mExpandWidth = paint.measureText(mExpandLabel);
+        mCollapseWidth = paint.measureText(mCollapseLabel);
+        mEllipsisWidth = paint.measureText(ELLIPSIS);
+    }
+
+    /**
+     * @return the lines of the text up to its last visible char, trailing blank lines don't count
+     */
+    static int getContentLineCount(@NonNull Layout layout, @NonNull CharSequence text) {
+        int end = trimEnd(text, 0, text.length());
+        return end == 0 ? 0 : layout.getLineForOffset(end - 1) + 1;
+    }
+
+    /**
+     * @param layout - the layout of the whole text
+     * @return the first maxLines of the text, the last one ellipsized to leave room for the expand label
+     */
+    @NonNull
+    CharSequence collapse(@NonNull Layout layout, @NonNull CharSequence text, int maxLines, @NonNull TextPaint paint) {
+        int lastLine = Math.max(0, Math.min(maxLines, layout.getLineCount()) - 1);
+        int lastStart = layout.getLineStart(lastLine);
+        int lastEnd = trimEnd(text, lastStart, layout.getLineEnd(lastLine));
+        float available = layout.getWidth() - mExpandWidth;
+        SpannableStringBuilder builder = new SpannableStringBuilder(text, 0, lastStart);
+        CharSequence lastLineText = text.subSequence(lastStart, lastEnd);
+        if (layout.getLineMax(lastLine) + mEllipsisWidth <= available) {
+            builder.append(lastLineText).append(ELLIPSIS);
+        } else {
+            builder.append(TextUtils.ellipsize(lastLineText, paint, available, TextUtils.TruncateAt.END));
+        }
+        appendLabel(builder, mExpandLabel);
+        return builder;
+    }
+
+    /**
+     * @return the whole text followed by the collapse label
+     */
+    @NonNull
+    CharSequence expand(@NonNull CharSequence text) {
+        SpannableStringBuilder builder = new SpannableStringBuilder(text, 0, trimEnd(text, 0, text.length()));
+        appendLabel(builder, mCollapseLabel);
+        return builder;
+    }
+
+    /**
+     * @param layout - the layout of the whole text
+     * @return the height of {@link #expand} without paddings, one more line if the label doesn't fit on the last one
+     */
+    int getExpandedHeight(@NonNull Layout layout, @NonNull CharSequence text) {
+        int lastLine = Math.max(0, getContentLineCount(layout, text) - 1);
+        int height = layout.getLineBottom(lastLine);
+        if (layout.getLineMax(lastLine) + mCollapseWidth > layout.getWidth()) {
+            height += layout.getLineBottom(lastLine) - layout.getLineTop(lastLine);
+        }
+        return height;
+    }
+
+    private void appendLabel(SpannableStringBuilder builder, String label) {
+        int start = builder.length();
+        builder.append(label);
+        builder.setSpan(mSpan, start, builder.length(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+    }
+
+    private static int trimEnd(CharSequence text, int start, int end) {
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * A LinkMovementMethod that only reacts to taps on the label, other clickable spans of the
+     * text, e.g. the links of the html, aren't clicked and the tap goes to the TextView's own click
+     */
+    static final class ToggleMovementMethod extends LinkMovementMethod {
+        private static ToggleMovementMethod sInstance;
+
+        static ToggleMovementMethod getInstance() {
+            if (sInstance == null) {
+                sInstance = new ToggleMovementMethod();
+            }
+            return sInstance;
+        }
+
+        @Override
+        public boolean onTouchEvent(TextView widget, Spannable buffer, MotionEvent event) {
+            int action = event.getAction();
+            if ((action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_DOWN)
+                    && !isOnToggle(widget, buffer, event)) {
+                Selection.removeSelection(buffer);
+                return false;
+            }
+            return super.onTouchEvent(widget, buffer, event);
+        }
+
+        private static boolean isOnToggle(TextView widget, Spannable buffer, MotionEvent event) {
+            Layout layout = widget.getLayout();
+            if (layout == null) {
+                return false;
+            }
+            int x = (int) event.getX() - widget.getTotalPaddingLeft() + widget.getScrollX();
+            int y = (int) event.getY() - widget.getTotalPaddingTop() + widget.getScrollY();
+            int offset = layout.getOffsetForHorizontal(layout.getLineForVertical(y), x);
+            return buffer.getSpans(offset, offset, ToggleSpan.class).length > 0;
+        }
+    }
+
+    private static final class ToggleSpan extends ClickableSpan {
+        private final int mColor;
+        private final View.OnClickListener mListener;
+
+        ToggleSpan(int color, View.OnClickListener listener) {
+            mColor = color;
+            mListener = listener;
+        }
+
+        @Override
+        public void onClick(@NonNull View widget) {
+            mListener.onClick(widget);
+        }
+
+        @Override
+        public void updateDrawState(@NonNull TextPaint ds) {
+            ds.setColor(mColor);
+            ds.setUnderlineText(false);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.goach.simple.library;
+
+/**
+ * author: Goach.zhong
+ * Date: 2026/10/18 13:40.
+ * Des:ExpandableTextView#onMeasure 计算出来的文字布局结果
+ */
+public final class LayoutMetrics {
+    private final int mLineCount;
+    private final int mFullHeight;
+    private final int mCollapsedHeight;
+    private final int mMaxCollapsedLines;
+
+    public LayoutMetrics(int lineCount, int fullHeight, int collapsedHeight, int maxCollapsedLines) {
+        mLineCount = lineCount;
+        mFullHeight = fullHeight;
+        mCollapsedHeight = collapsedHeight;
+        mMaxCollapsedLines = maxCollapsedLines;
+    }
+
+    public int getLineCount() {
+        return mLineCount;
+    }
+
+    /**
+     * @return the text height with all lines, including the compound paddings
+     */
+    public int getFullHeight() {
+        return mFullHeight;
+    }
+
+    /**
+     * @return the text height with at most maxCollapsedLines lines, including the compound paddings
+     */
+    public int getCollapsedHeight() {
+        return mCollapsedHeight;
+    }
+
+    public int getMaxCollapsedLines() {
+        return mMaxCollapsedLines;
+    }
+
+    /**
+     * @return true if the text doesn't fit in collapsed mode, i.e. the expand/collapse toggle is shown
+     */
+    public boolean isToggleVisible() {
+        return mLineCount > mMaxCollapsedLines;
+    }
+}
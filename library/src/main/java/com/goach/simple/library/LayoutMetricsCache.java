@@ -0,0 +1,233 @@
+package com.goach.simple.library;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
+import android.widget.TextView;
+
+import java.util.Locale;
+
+/**
+ * author: Goach.zhong
+ * Date: 2026/10/18 13:52.
+ * Des:文字布局结果的缓存，同样的内容在同样的宽度和字体下，onMeasure只需要测量一次
+ */
+public class LayoutMetricsCache extends LruCache<LayoutMetricsCache.Key, LayoutMetrics> {
+
+    private static final int DEFAULT_MAX_ENTRIES = 500;
+
+    private static volatile LayoutMetricsCache sInstance = new LayoutMetricsCache(DEFAULT_MAX_ENTRIES);
+
+    private static volatile DiskLayoutMetricsCache sDiskCache;
+
+    /* The system fonts, numbered by their position so their hash is the same in every process */
+    private static final Typeface[] SYSTEM_TYPEFACES = {
+            Typeface.DEFAULT, Typeface.DEFAULT_BOLD, Typeface.SANS_SERIF, Typeface.SERIF, Typeface.MONOSPACE};
+
+    public LayoutMetricsCache(int maxEntries) {
+        super(maxEntries);
+    }
+
+    /**
+     * @return the shared cache, null if caching is disabled
+     */
+    @Nullable
+    public static LayoutMetricsCache getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Replaces the shared cache. A maxEntries of 0 or less disables caching.
+     */
+    public static void configure(int maxEntries) {
+        sInstance = maxEntries > 0 ? new LayoutMetricsCache(maxEntries) : null;
+    }
+
+    /**
+     * Sets the persistent cache behind the memory one, see {@link DiskLayoutMetricsCache#install}.
+     * Misses are looked up there, and new metrics are written to it. Null to turn it off.
+     */
+    public static void setDiskCache(@Nullable DiskLayoutMetricsCache diskCache) {
+        sDiskCache = diskCache;
+    }
+
+    @Nullable
+    public static DiskLayoutMetricsCache getDiskCache() {
+        return sDiskCache;
+    }
+
+    /**
+     * A miss is read from the disk cache, a hit there is kept in memory from then on
+     */
+    @Override
+    protected LayoutMetrics create(@NonNull Key key) {
+        DiskLayoutMetricsCache diskCache = sDiskCache;
+        return diskCache == null ? null : diskCache.get(key);
+    }
+
+    /**
+     * Stores the metrics in memory and in the disk cache
+     */
+    void putMetrics(@NonNull Key key, @NonNull LayoutMetrics metrics) {
+        put(key, metrics);
+        DiskLayoutMetricsCache diskCache = sDiskCache;
+        if (diskCache != null && key.persistable) {
+            diskCache.put(key, metrics);
+        }
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the html source
+     */
+    public static long contentHash(@NonNull CharSequence source) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0, len = source.length(); i < len; i++) {
+            hash ^= source.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Hash of everything in the TextView's style that changes line breaking and line heights
+     */
+    public static int styleHash(@NonNull TextView textView) {
+        float spacingMult = 1f;
+        float spacingAdd = 0f;
+        boolean includePad = true;
+        int breakStrategy = 0;
+        int hyphenationFrequency = 0;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            spacingMult = textView.getLineSpacingMultiplier();
+            spacingAdd = textView.getLineSpacingExtra();
+            includePad = textView.getIncludeFontPadding();
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            breakStrategy = textView.getBreakStrategy();
+            hyphenationFrequency = textView.getHyphenationFrequency();
+        }
+        return styleHash(textView.getPaint(), spacingMult, spacingAdd, includePad, breakStrategy, hyphenationFrequency);
+    }
+
+    /**
+     * Hash of the paint alone, for text measured without line breaking
+     */
+    public static int styleHash(@NonNull Paint paint, float spacingMult, float spacingAdd, boolean includePad) {
+        return styleHash(paint, spacingMult, spacingAdd, includePad, 0, 0);
+    }
+
+    /**
+     * @param breakStrategy - the TextView's break strategy on API 23+, 0 below
+     * @param hyphenationFrequency - the TextView's hyphenation frequency on API 23+, 0 below
+     */
+    public static int styleHash(@NonNull Paint paint, float spacingMult, float spacingAdd, boolean includePad,
+                                int breakStrategy, int hyphenationFrequency) {
+        Typeface typeface = paint.getTypeface();
+        int hash = Float.floatToIntBits(paint.getTextSize());
+        hash = 31 * hash + typefaceHash(typeface);
+        hash = 31 * hash + (typeface == null ? 0 : typeface.getStyle());
+        hash = 31 * hash + paint.getFlags();
+        hash = 31 * hash + Float.floatToIntBits(paint.getTextScaleX());
+        hash = 31 * hash + Float.floatToIntBits(paint.getTextSkewX());
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            Locale locale = paint.getTextLocale();
+            hash = 31 * hash + (locale == null ? 0 : locale.hashCode());
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            hash = 31 * hash + Float.floatToIntBits(paint.getLetterSpacing());
+            String features = paint.getFontFeatureSettings();
+            hash = 31 * hash + (features == null ? 0 : features.hashCode());
+        }
+        hash = 31 * hash + Float.floatToIntBits(spacingMult);
+        hash = 31 * hash + Float.floatToIntBits(spacingAdd);
+        hash = 31 * hash + (includePad ? 1 : 0);
+        hash = 31 * hash + breakStrategy;
+        hash = 31 * hash + hyphenationFrequency;
+        return hash;
+    }
+
+    /**
+     * A system font hashes to its position in SYSTEM_TYPEFACES, any other font to its identity in this process
+     */
+    private static int typefaceHash(@Nullable Typeface typeface) {
+        if (typeface == null) {
+            return 0;
+        }
+        for (int i = 0; i < SYSTEM_TYPEFACES.length; i++) {
+            if (typeface.equals(SYSTEM_TYPEFACES[i])) {
+                return i + 1;
+            }
+        }
+        return typeface.hashCode();
+    }
+
+    /**
+     * @return true if the paint's font hashes the same in every process, so its metrics can go to the disk cache
+     */
+    public static boolean hasStableTypeface(@NonNull Paint paint) {
+        Typeface typeface = paint.getTypeface();
+        if (typeface == null) {
+            return true;
+        }
+        for (Typeface system : SYSTEM_TYPEFACES) {
+            if (typeface.equals(system)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static final class Key {
+        final long contentHash;
+        final int width;
+        final int styleHash;
+        final int maxCollapsedLines;
+        /* Not part of the key, false if the style hash differs between processes, see hasStableTypeface */
+        final boolean persistable;
+
+        /**
+         * @param contentHash - see {@link #contentHash(CharSequence)}
+         * @param width - the width available to the text layout, without paddings
+         * @param styleHash - see {@link #styleHash(TextView)}
+         * @param maxCollapsedLines - the max lines in collapsed mode
+         */
+        public Key(long contentHash, int width, int styleHash, int maxCollapsedLines) {
+            this(contentHash, width, styleHash, maxCollapsedLines, true);
+        }
+
+        Key(long contentHash, int width, int styleHash, int maxCollapsedLines, boolean persistable) {
+            this.contentHash = contentHash;
+            this.width = width;
+            this.styleHash = styleHash;
+            this.maxCollapsedLines = maxCollapsedLines;
+            this.persistable = persistable;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return contentHash == key.contentHash
+                    && width == key.width
+                    && styleHash == key.styleHash
+                    && maxCollapsedLines == key.maxCollapsedLines;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = (int) (contentHash ^ (contentHash >>> 32));
+            result = 31 * result + width;
+            result = 31 * result + styleHash;
+            result = 31 * result + maxCollapsedLines;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,584 @@
+package com.goach.simple.library;
+
+import android.graphics.Typeface;
+import android.support.annotation.Nullable;
+import android.text.Spannable;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.ForegroundColorSpan;
+import android.text.style.ImageSpan;
+import android.text.style.StyleSpan;
+import android.text.style.URLSpan;
+import android.text.style.UnderlineSpan;
+
+import java.util.Arrays;
+
+/**
+ * author: Goach.zhong
+ * Date: 2026/10/19 21:30.
+ * Des:轻量的Html解析，一遍扫描直接从CharSequence生成Spanned，不经过TagSoup。
+ * 只支持feed里常见的标签：b、strong、i、em、u、a、br、p、img、font color，
+ * 结果和Html.fromHtml一致。遇到不支持的标签、实体或者不规范的嵌套返回null，
+ * 由调用方回退到Html.fromHtml
+ */
+final class LiteHtmlParser {
+
+    private static final int TAG_B = 0;
+    private static final int TAG_STRONG = 1;
+    private static final int TAG_I = 2;
+    private static final int TAG_EM = 3;
+    private static final int TAG_U = 4;
+    private static final int TAG_A = 5;
+    private static final int TAG_FONT = 6;
+    private static final int TAG_P = 7;
+    private static final int TAG_BR = 8;
+    private static final int TAG_IMG = 9;
+
+    private static final String[] TAG_NAMES = {"b", "strong", "i", "em", "u", "a", "font", "p", "br", "img"};
+
+    /* Html.fromHtml separates paragraphs by an empty line */
+    private static final int PARAGRAPH_NEWLINES = 2;
+
+    private final CharSequence mSource;
+    private final int mLength;
+    private final int mMaxTextLength;
+    private final StringBuilder mText;
+    private int mPos;
+    private boolean mTruncated;
+
+    /* The open elements, innermost last */
+    private int[] mOpenTags = new int[8];
+    private int[] mOpenStarts = new int[8];
+    private Object[] mOpenValues = new Object[8];
+    private int mDepth;
+
+    /* The spans in the order Html.fromHtml sets them, which is when their element ends */
+    private Object[] mSpans = new Object[8];
+    private int[] mSpanRanges = new int[16];
+    private int mSpanCount;
+
+    /* The attributes of the current start tag */
+    private String mSrc;
+    private String mHref;
+    private String mColor;
+    private String mWidth;
+    private String mHeight;
+
+    private LiteHtmlParser(CharSequence source, int maxTextLength) {
+        mSource = source;
+        mLength = source.length();
+        mMaxTextLength = maxTextLength;
+        mText = new StringBuilder(Math.min(mLength, maxTextLength));
+    }
+
+    /**
+     * @return the parsed text, null if the source uses anything outside the supported subset
+     */
+    @Nullable
+    static Spanned parse(CharSequence source) {
+        return new LiteHtmlParser(source, Integer.MAX_VALUE).run();
+    }
+
+    /**
+     * Parses only until the text reaches maxTextLength, the rest of the source isn't read
+     *
+     * @return the parsed prefix, null if it uses anything outside the supported subset
+     */
+    @Nullable
+    static HtmlParser.Preview parsePrefix(CharSequence source, int maxTextLength) {
+        LiteHtmlParser parser = new LiteHtmlParser(source, maxTextLength);
+        Spanned parsed = parser.run();
+        return parsed == null ? null : new HtmlParser.Preview(parsed, parser.mTruncated);
+    }
+
+    private Spanned run() {
+        while (mPos < mLength) {
+            if (mText.length() >= mMaxTextLength) {
+                mTruncated = true;
+                break;
+            }
+            char c = mSource.charAt(mPos);
+            if (c == '<') {
+                if (!parseMarkup()) {
+                    return null;
+                }
+            } else if (c == '&') {
+                int codePoint = parseEntity();
+                if (codePoint < 0) {
+                    return null;
+                }
+                appendText(codePoint);
+            } else if (c == '>' || c == '\r') {
+                // left to TagSoup, which has its own ideas about these
+                return null;
+            } else {
+                appendText(c);
+                mPos++;
+            }
+        }
+        // like TagSoup, the elements still open end with the document, or where the prefix was cut
+        while (mDepth > 0) {
+            endElement();
+        }
+        SpannableStringBuilder result = new SpannableStringBuilder(mText);
+        for (int i = 0; i < mSpanCount; i++) {
+            result.setSpan(mSpans[i], mSpanRanges[i * 2], mSpanRanges[i * 2 + 1], Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+        return result;
+    }
+
+    /**
+     * Collapses spaces and newlines the way Html.fromHtml does
+     */
+    private void appendText(int c) {
+        if (c == ' ' || c == '\n') {
+            int length = mText.length();
+            char pred = length == 0 ? '\n' : mText.charAt(length - 1);
+            if (pred != ' ' && pred != '\n') {
+                mText.append(' ');
+            }
+        } else {
+            mText.appendCodePoint(c);
+        }
+    }
+
+    private boolean parseMarkup() {
+        if (startsWith("<!--")) {
+            int end = indexOf("-->", mPos + 4);
+            if (end < 0) {
+                return false;
+            }
+            mPos = end + 3;
+            return true;
+        }
+        if (mPos + 1 < mLength && mSource.charAt(mPos + 1) == '/') {
+            mPos += 2;
+            int tag = parseTagName();
+            skipWhitespace();
+            if (tag < 0 || !consume('>') || mDepth == 0 || mOpenTags[mDepth - 1] != tag) {
+                return false;
+            }
+            endElement();
+            return true;
+        }
+        mPos++;
+        int tag = parseTagName();
+        if (tag < 0 || !parseAttributes()) {
+            return false;
+        }
+        boolean selfClosing = consume('/');
+        if (!consume('>')) {
+            return false;
+        }
+        if (selfClosing && tag != TAG_BR && tag != TAG_IMG) {
+            return false;
+        }
+        return startElement(tag);
+    }
+
+    private boolean startElement(int tag) {
+        switch (tag) {
+            case TAG_BR:
+                mText.append('\n');
+                return true;
+            case TAG_IMG:
+                int start = mText.length();
+                mText.append('\uFFFC');
+                addSpan(new ImageSpan(new HtmlParser.ImagePlaceholder(
+                        HtmlParser.parsePixels(mWidth), HtmlParser.parsePixels(mHeight)), mSrc), start);
+                return true;
+            case TAG_P:
+                // TagSoup moves inline elements around a paragraph, leave that to it
+                if (mDepth > 0) {
+                    return false;
+                }
+                appendNewlines(PARAGRAPH_NEWLINES);
+                push(tag, null);
+                return true;
+            case TAG_A:
+                for (int i = 0; i < mDepth; i++) {
+                    if (mOpenTags[i] == TAG_A) {
+                        return false;
+                    }
+                }
+                push(tag, mHref);
+                return true;
+            case TAG_FONT:
+                Integer color = null;
+                if (mColor != null && mColor.length() > 0) {
+                    int value = parseColor(mColor);
+                    if (value == -1) {
+                        return false;
+                    }
+                    color = value | 0xFF000000;
+                }
+                push(tag, color);
+                return true;
+            default:
+                push(tag, null);
+                return true;
+        }
+    }
+
+    private void endElement() {
+        mDepth--;
+        int tag = mOpenTags[mDepth];
+        int start = mOpenStarts[mDepth];
+        Object value = mOpenValues[mDepth];
+        mOpenValues[mDepth] = null;
+        switch (tag) {
+            case TAG_P:
+                if (!mTruncated) {
+                    appendNewlines(PARAGRAPH_NEWLINES);
+                }
+                return;
+            case TAG_B:
+            case TAG_STRONG:
+                addSpanFromMark(new StyleSpan(Typeface.BOLD), start);
+                return;
+            case TAG_I:
+            case TAG_EM:
+                addSpanFromMark(new StyleSpan(Typeface.ITALIC), start);
+                return;
+            case TAG_U:
+                addSpanFromMark(new UnderlineSpan(), start);
+                return;
+            case TAG_A:
+                if (value != null) {
+                    addSpanFromMark(new URLSpan((String) value), start);
+                }
+                return;
+            case TAG_FONT:
+                if (value != null) {
+                    addSpanFromMark(new ForegroundColorSpan((Integer) value), start);
+                }
+                return;
+            default:
+        }
+    }
+
+    private void push(int tag, Object value) {
+        if (mDepth == mOpenTags.length) {
+            mOpenTags = Arrays.copyOf(mOpenTags, mDepth * 2);
+            mOpenStarts = Arrays.copyOf(mOpenStarts, mDepth * 2);
+            mOpenValues = Arrays.copyOf(mOpenValues, mDepth * 2);
+        }
+        mOpenTags[mDepth] = tag;
+        mOpenStarts[mDepth] = mText.length();
+        mOpenValues[mDepth] = value;
+        mDepth++;
+    }
+
+    /**
+     * Empty elements get no span, like Html.fromHtml
+     */
+    private void addSpanFromMark(Object span, int start) {
+        if (start != mText.length()) {
+            addSpan(span, start);
+        }
+    }
+
+    private void addSpan(Object span, int start) {
+        if (mSpanCount == mSpans.length) {
+            mSpans = Arrays.copyOf(mSpans, mSpanCount * 2);
+            mSpanRanges = Arrays.copyOf(mSpanRanges, mSpanCount * 4);
+        }
+        mSpans[mSpanCount] = span;
+        mSpanRanges[mSpanCount * 2] = start;
+        mSpanRanges[mSpanCount * 2 + 1] = mText.length();
+        mSpanCount++;
+    }
+
+    private void appendNewlines(int minNewlines) {
+        int length = mText.length();
+        if (length == 0) {
+            return;
+        }
+        int existing = 0;
+        for (int i = length - 1; i >= 0 && mText.charAt(i) == '\n'; i--) {
+            existing++;
+        }
+        for (int i = existing; i < minNewlines; i++) {
+            mText.append('\n');
+        }
+    }
+
+    /**
+     * @return the tag, -1 if it isn't supported
+     */
+    private int parseTagName() {
+        int start = mPos;
+        while (mPos < mLength && isLetterOrDigit(mSource.charAt(mPos))) {
+            mPos++;
+        }
+        int length = mPos - start;
+        if (length == 0) {
+            return -1;
+        }
+        for (int tag = 0; tag < TAG_NAMES.length; tag++) {
+            String name = TAG_NAMES[tag];
+            if (name.length() == length && regionMatchesIgnoreCase(start, name)) {
+                return tag;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the attributes up to '/' or '>', keeping the ones the supported tags use
+     */
+    private boolean parseAttributes() {
+        mSrc = null;
+        mHref = null;
+        mColor = null;
+        mWidth = null;
+        mHeight = null;
+        while (true) {
+            skipWhitespace();
+            if (mPos >= mLength) {
+                return false;
+            }
+            char c = mSource.charAt(mPos);
+            if (c == '>' || (c == '/' && mPos + 1 < mLength && mSource.charAt(mPos + 1) == '>')) {
+                return true;
+            }
+            int nameStart = mPos;
+            while (mPos < mLength && isNameChar(mSource.charAt(mPos))) {
+                mPos++;
+            }
+            int nameEnd = mPos;
+            if (nameEnd == nameStart) {
+                return false;
+            }
+            skipWhitespace();
+            String value;
+            if (consume('=')) {
+                skipWhitespace();
+                value = parseAttributeValue();
+                if (value == null) {
+                    return false;
+                }
+            } else {
+                // a bare attribute takes its name as the value in TagSoup
+                value = mSource.subSequence(nameStart, nameEnd).toString();
+            }
+            if (!setAttribute(nameStart, nameEnd - nameStart, value)) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * @return false for a repeated attribute, which TagSoup resolves its own way
+     */
+    private boolean setAttribute(int nameStart, int nameLength, String value) {
+        if (nameLength == 3 && regionMatchesIgnoreCase(nameStart, "src")) {
+            if (mSrc != null) {
+                return false;
+            }
+            mSrc = value;
+        } else if (nameLength == 4 && regionMatchesIgnoreCase(nameStart, "href")) {
+            if (mHref != null) {
+                return false;
+            }
+            mHref = value;
+        } else if (nameLength == 5 && regionMatchesIgnoreCase(nameStart, "color")) {
+            if (mColor != null) {
+                return false;
+            }
+            mColor = value;
+        } else if (nameLength == 5 && regionMatchesIgnoreCase(nameStart, "width")) {
+            if (mWidth != null) {
+                return false;
+            }
+            mWidth = value;
+        } else if (nameLength == 6 && regionMatchesIgnoreCase(nameStart, "height")) {
+            if (mHeight != null) {
+                return false;
+            }
+            mHeight = value;
+        } else if ((nameLength == 4 && regionMatchesIgnoreCase(nameStart, "face"))
+                || (nameLength == 5 && regionMatchesIgnoreCase(nameStart, "style"))) {
+            // typefaces and css styles are left to Html.fromHtml
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the value with its entities decoded, null if it can't be read
+     */
+    private String parseAttributeValue() {
+        if (mPos >= mLength) {
+            return null;
+        }
+        char quote = mSource.charAt(mPos);
+        boolean quoted = quote == '"' || quote == '\'';
+        if (quoted) {
+            mPos++;
+        }
+        StringBuilder value = new StringBuilder();
+        while (mPos < mLength) {
+            char c = mSource.charAt(mPos);
+            if (quoted ? c == quote : (c == '>' || isWhitespace(c))) {
+                break;
+            }
+            if (c == '&') {
+                int codePoint = parseEntity();
+                if (codePoint < 0) {
+                    return null;
+                }
+                value.appendCodePoint(codePoint);
+            } else if (c == '<' || c == '\r' || (!quoted && (c == '"' || c == '\''))) {
+                return null;
+            } else {
+                value.append(c);
+                mPos++;
+            }
+        }
+        if (quoted) {
+            if (!consume(quote)) {
+                return null;
+            }
+        } else if (value.length() == 0 || value.charAt(value.length() - 1) == '/') {
+            // "src=a.png/>" reads differently depending on the parser
+            return null;
+        }
+        return value.toString();
+    }
+
+    /**
+     * @return the decoded character, -1 if the entity isn't supported
+     */
+    private int parseEntity() {
+        int end = indexOf(";", mPos + 1);
+        // entities are short, anything longer is a stray '&'
+        if (end < 0 || end - mPos > 10) {
+            return -1;
+        }
+        int start = mPos + 1;
+        int codePoint = -1;
+        if (end > start + 1 && mSource.charAt(start) == '#') {
+            boolean hex = mSource.charAt(start + 1) == 'x' || mSource.charAt(start + 1) == 'X';
+            codePoint = parseNumber(hex ? start + 2 : start + 1, end, hex ? 16 : 10);
+            // TagSoup maps 0x80-0x9F to windows-1252, and the rest has to be a valid code point
+            if ((codePoint >= 0x80 && codePoint <= 0x9F) || codePoint == 0
+                    || !Character.isValidCodePoint(codePoint)) {
+                return -1;
+            }
+        } else if (regionEquals(start, end, "amp")) {
+            codePoint = '&';
+        } else if (regionEquals(start, end, "lt")) {
+            codePoint = '<';
+        } else if (regionEquals(start, end, "gt")) {
+            codePoint = '>';
+        } else if (regionEquals(start, end, "quot")) {
+            codePoint = '"';
+        } else if (regionEquals(start, end, "nbsp")) {
+            codePoint = '\u00A0';
+        }
+        if (codePoint >= 0) {
+            mPos = end + 1;
+        }
+        return codePoint;
+    }
+
+    private int parseNumber(int start, int end, int radix) {
+        if (start >= end) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = Character.digit(mSource.charAt(i), radix);
+            if (digit < 0 || value > Character.MAX_CODE_POINT) {
+                return -1;
+            }
+            value = value * radix + digit;
+        }
+        return value;
+    }
+
+    /**
+     * "#RRGGBB", named and short colors are left to Html.fromHtml
+     *
+     * @return the color, -1 if it isn't supported
+     */
+    private static int parseColor(String color) {
+        if (color.length() != 7 || color.charAt(0) != '#') {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 1; i < 7; i++) {
+            int digit = Character.digit(color.charAt(i), 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    private boolean consume(char c) {
+        if (mPos < mLength && mSource.charAt(mPos) == c) {
+            mPos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhitespace() {
+        while (mPos < mLength && isWhitespace(mSource.charAt(mPos))) {
+            mPos++;
+        }
+    }
+
+    private boolean startsWith(String prefix) {
+        return mPos + prefix.length() <= mLength && regionEquals(mPos, mPos + prefix.length(), prefix);
+    }
+
+    private int indexOf(String target, int from) {
+        int last = mLength - target.length();
+        for (int i = from; i <= last; i++) {
+            if (regionEquals(i, i + target.length(), target)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean regionEquals(int start, int end, String target) {
+        if (end - start != target.length()) {
+            return false;
+        }
+        for (int i = 0; i < target.length(); i++) {
+            if (mSource.charAt(start + i) != target.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param lowerCase - the lower case name to compare with
+     */
+    private boolean regionMatchesIgnoreCase(int start, String lowerCase) {
+        for (int i = 0; i < lowerCase.length(); i++) {
+            if (Character.toLowerCase(mSource.charAt(start + i)) != lowerCase.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\f';
+    }
+
+    private static boolean isLetterOrDigit(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    private static boolean isNameChar(char c) {
+        return isLetterOrDigit(c) || c == '-' || c == '_' || c == ':' || c == '.';
+    }
+}
@@ -0,0 +1,394 @@
+package com.goach.simple.library;
+
+import android.annotation.TargetApi;
+import android.os.AsyncTask;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.text.Layout;
+import android.text.PrecomputedText;
+import android.text.Spanned;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * author: Goach.zhong
+ * Date: 2026/10/18 15:20.
+ * Des:在子线程预先解析和排版好的内容，配合RecyclerView的预加载使用，
+ * ExpandableTextView#setText(PrecomputedLayout) 绑定的时候不再需要解析和断行
+ */
+public final class PrecomputedLayout {
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private static volatile Executor sExecutor = AsyncTask.THREAD_POOL_EXECUTOR;
+
+    private final CharSequence mSource;
+    private final Spanned mParsed;
+    private final CharSequence mPrecomputedText;
+    private final LayoutMetrics mMetrics;
+
+    private PrecomputedLayout(CharSequence source, Spanned parsed, CharSequence precomputedText, LayoutMetrics metrics) {
+        mSource = source;
+        mParsed = parsed;
+        mPrecomputedText = precomputedText;
+        mMetrics = metrics;
+    }
+
+    /**
+     * Parses and lays out the html source. Meant to be called on a worker thread.
+     * <p>
+     * On API 28+ the text is measured into a {@link PrecomputedText}. Below that a {@link StaticLayout}
+     * is built instead and its metrics go into {@link LayoutMetricsCache}, so the bind takes a single
+     * measure pass. Content with images is only parsed, since its layout changes as images load.
+     */
+    @WorkerThread
+    @NonNull
+    public static PrecomputedLayout create(@Nullable CharSequence source, @NonNull Params params) {
+        Spanned parsed = HtmlParser.parse(source);
+        if (parsed == null || HtmlParser.hasImages(parsed)) {
+            return new PrecomputedLayout(source, parsed, null, null);
+        }
+        CharSequence text = parsed;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P && params.mTextMetricsParams != null) {
+            text = precompute(parsed, params);
+        }
+        LayoutMetrics metrics = measure(text, params);
+        LayoutMetricsCache cache = LayoutMetricsCache.getInstance();
+        if (cache != null) {
+            cache.putMetrics(new LayoutMetricsCache.Key(LayoutMetricsCache.contentHash(source), params.mWidth,
+                    params.mStyleHash, params.mMaxCollapsedLines, params.mPersistable), metrics);
+        }
+        return new PrecomputedLayout(source, parsed, text == parsed ? null : text, metrics);
+    }
+
+    /**
+     * Sets the executor the work of {@link #createAll} is spread over.
+     * Defaults to {@link AsyncTask#THREAD_POOL_EXECUTOR}.
+     */
+    public static void setExecutor(@NonNull Executor executor) {
+        sExecutor = executor;
+    }
+
+    /**
+     * Like {@link #create}, for a whole page of content. The sources are taken one at a time by the
+     * calling thread and up to a worker per core, so a busy executor only means the calling
+     * thread does more of the work. Blocks until all are done, call it on a worker thread.
+     * {@link #getMetrics()} tells for each which ones need a toggle and their heights.
+     *
+     * @return the layouts in the order of the sources
+     */
+    @WorkerThread
+    @NonNull
+    public static List<PrecomputedLayout> createAll(@NonNull List<? extends CharSequence> sources, @NonNull Params params) {
+        int count = sources.size();
+        PrecomputedLayout[] layouts = new PrecomputedLayout[count];
+        BatchWorker worker = new BatchWorker(sources, params, layouts);
+        int helpers = Math.min(Runtime.getRuntime().availableProcessors(), count) - 1;
+        for (int i = 0; i < helpers; i++) {
+            sExecutor.execute(worker);
+        }
+        worker.run();
+        worker.await();
+        return Arrays.asList(layouts);
+    }
+
+    /**
+     * Runs {@link #createAll} on the executor and delivers the layouts on the main thread
+     *
+     * @return the task, which can be cancelled when the result is no longer wanted
+     */
+    @NonNull
+    public static BatchTask createAllAsync(@NonNull List<? extends CharSequence> sources, @NonNull Params params,
+                                           @NonNull BatchCallback callback) {
+        BatchTask task = new BatchTask(new ArrayList<CharSequence>(sources), params, callback);
+        sExecutor.execute(task);
+        return task;
+    }
+
+    @TargetApi(Build.VERSION_CODES.P)
+    private static CharSequence precompute(Spanned parsed, Params params) {
+        return PrecomputedText.create(parsed, (PrecomputedText.Params) params.mTextMetricsParams);
+    }
+
+    static LayoutMetrics measure(CharSequence text, Params params) {
+        TextPaint paint = params.mPaint;
+        StaticLayout layout;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            layout = buildLayout(text, paint, params);
+        } else {
+            layout = new StaticLayout(text, paint, params.mWidth,
+                    Layout.Alignment.ALIGN_NORMAL, params.mSpacingMult, params.mSpacingAdd, params.mIncludePad);
+        }
+        int lineCount = layout.getLineCount();
+        return new LayoutMetrics(lineCount,
+                layout.getLineTop(lineCount) + params.mVerticalPadding,
+                layout.getLineTop(Math.min(lineCount, params.mMaxCollapsedLines)) + params.mVerticalPadding,
+                params.mMaxCollapsedLines);
+    }
+
+    /**
+     * Breaks the lines the way the TextView does, with its break strategy and hyphenation
+     */
+    @TargetApi(Build.VERSION_CODES.M)
+    private static StaticLayout buildLayout(CharSequence text, TextPaint paint, Params params) {
+        return StaticLayout.Builder.obtain(text, 0, text.length(), paint, params.mWidth)
+                .setLineSpacing(params.mSpacingAdd, params.mSpacingMult)
+                .setIncludePad(params.mIncludePad)
+                .setBreakStrategy(params.mBreakStrategy)
+                .setHyphenationFrequency(params.mHyphenationFrequency)
+                .build();
+    }
+
+    @Nullable
+    public CharSequence getSource() {
+        return mSource;
+    }
+
+    @Nullable
+    Spanned getParsed() {
+        return mParsed;
+    }
+
+    /**
+     * @return the PrecomputedText on API 28+, null otherwise
+     */
+    @Nullable
+    CharSequence getPrecomputedText() {
+        return mPrecomputedText;
+    }
+
+    /**
+     * @return the layout metrics, null if the content is empty or has images
+     */
+    @Nullable
+    public LayoutMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Creates the layouts of the sources left, run by the calling thread and the helpers alike
+     */
+    private static final class BatchWorker implements Runnable {
+        private final List<? extends CharSequence> mSources;
+        private final Params mParams;
+        private final PrecomputedLayout[] mLayouts;
+        private final AtomicInteger mNext = new AtomicInteger();
+        private final CountDownLatch mDone;
+        private final AtomicReference<RuntimeException> mError = new AtomicReference<>();
+
+        BatchWorker(List<? extends CharSequence> sources, Params params, PrecomputedLayout[] layouts) {
+            mSources = sources;
+            mParams = params;
+            mLayouts = layouts;
+            mDone = new CountDownLatch(layouts.length);
+        }
+
+        @Override
+        public void run() {
+            // TextPaint isn't thread safe, each thread measures with its own copy of the params
+            Params params = null;
+            int index;
+            while ((index = mNext.getAndIncrement()) < mLayouts.length) {
+                try {
+                    if (params == null) {
+                        params = new Params(mParams);
+                    }
+                    mLayouts[index] = create(mSources.get(index), params);
+                } catch (RuntimeException e) {
+                    mError.compareAndSet(null, e);
+                } finally {
+                    mDone.countDown();
+                }
+            }
+        }
+
+        /**
+         * Waits for the sources taken by the helpers, the calling thread has done the rest
+         */
+        void await() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    mDone.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            RuntimeException error = mError.get();
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
+    public interface BatchCallback {
+        /**
+         * Called on the main thread once all the sources have been laid out
+         *
+         * @param layouts - the layouts in the order of the sources
+         */
+        void onCreated(@NonNull List<PrecomputedLayout> layouts);
+
+        /**
+         * Called on the main thread instead of {@link #onCreated} if a source failed to be laid out
+         */
+        void onFailed(@NonNull RuntimeException error);
+    }
+
+    public static final class BatchTask implements Runnable {
+        private final List<CharSequence> mSources;
+        private final Params mParams;
+        private final BatchCallback mCallback;
+        private volatile boolean mCancelled;
+
+        BatchTask(List<CharSequence> sources, Params params, BatchCallback callback) {
+            mSources = sources;
+            mParams = params;
+            mCallback = callback;
+        }
+
+        public void cancel() {
+            mCancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        @Override
+        public void run() {
+            if (mCancelled) {
+                return;
+            }
+            List<PrecomputedLayout> layouts = null;
+            RuntimeException error = null;
+            try {
+                layouts = createAll(mSources, mParams);
+            } catch (RuntimeException e) {
+                error = e;
+            }
+            final List<PrecomputedLayout> result = layouts;
+            final RuntimeException failure = error;
+            sMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mCancelled) {
+                        return;
+                    }
+                    if (failure != null) {
+                        mCallback.onFailed(failure);
+                    } else {
+                        mCallback.onCreated(result);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * The text style the layout is computed with. Create it on the main thread
+     * with {@link ExpandableTextView#getPrecomputeParams(int)}. Its paint isn't thread safe,
+     * so {@link #create} shouldn't be called with the same params from several threads at once,
+     * {@link #createAll} gives each of its threads a copy.
+     */
+    public static final class Params {
+        final TextPaint mPaint;
+        final int mWidth;
+        final float mSpacingMult;
+        final float mSpacingAdd;
+        final boolean mIncludePad;
+        final int mVerticalPadding;
+        final int mMaxCollapsedLines;
+        final int mBreakStrategy;
+        final int mHyphenationFrequency;
+        final int mStyleHash;
+        final boolean mPersistable;
+        /* PrecomputedText.Params on API 28+ */
+        final Object mTextMetricsParams;
+
+        Params(@NonNull TextView textView, int width, int maxCollapsedLines) {
+            mPaint = new TextPaint(textView.getPaint());
+            mWidth = width;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                mSpacingMult = textView.getLineSpacingMultiplier();
+                mSpacingAdd = textView.getLineSpacingExtra();
+                mIncludePad = textView.getIncludeFontPadding();
+            } else {
+                mSpacingMult = 1f;
+                mSpacingAdd = 0f;
+                mIncludePad = true;
+            }
+            mVerticalPadding = textView.getCompoundPaddingTop() + textView.getCompoundPaddingBottom();
+            mMaxCollapsedLines = maxCollapsedLines;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                mBreakStrategy = textView.getBreakStrategy();
+                mHyphenationFrequency = textView.getHyphenationFrequency();
+            } else {
+                mBreakStrategy = 0;
+                mHyphenationFrequency = 0;
+            }
+            mStyleHash = LayoutMetricsCache.styleHash(mPaint, mSpacingMult, mSpacingAdd, mIncludePad,
+                    mBreakStrategy, mHyphenationFrequency);
+            mPersistable = LayoutMetricsCache.hasStableTypeface(mPaint);
+            mTextMetricsParams = Build.VERSION.SDK_INT >= Build.VERSION_CODES.P ? textMetricsParams(textView) : null;
+        }
+
+        /**
+         * A copy with its own paint, for another thread
+         */
+        Params(@NonNull Params other) {
+            mPaint = new TextPaint(other.mPaint);
+            mWidth = other.mWidth;
+            mSpacingMult = other.mSpacingMult;
+            mSpacingAdd = other.mSpacingAdd;
+            mIncludePad = other.mIncludePad;
+            mVerticalPadding = other.mVerticalPadding;
+            mMaxCollapsedLines = other.mMaxCollapsedLines;
+            mBreakStrategy = other.mBreakStrategy;
+            mHyphenationFrequency = other.mHyphenationFrequency;
+            mStyleHash = other.mStyleHash;
+            mPersistable = other.mPersistable;
+            mTextMetricsParams = Build.VERSION.SDK_INT >= Build.VERSION_CODES.P && other.mTextMetricsParams != null
+                    ? copyTextMetricsParams(other.mTextMetricsParams) : null;
+        }
+
+        @TargetApi(Build.VERSION_CODES.P)
+        private static Object textMetricsParams(TextView textView) {
+            return textView.getTextMetricsParams();
+        }
+
+        /**
+         * PrecomputedText measures with the paint of its params, so the copy gets its own paint too
+         */
+        @TargetApi(Build.VERSION_CODES.P)
+        private static Object copyTextMetricsParams(Object params) {
+            PrecomputedText.Params source = (PrecomputedText.Params) params;
+            return new PrecomputedText.Params.Builder(new TextPaint(source.getTextPaint()))
+                    .setBreakStrategy(source.getBreakStrategy())
+                    .setHyphenationFrequency(source.getHyphenationFrequency())
+                    .setTextDirection(source.getTextDirection())
+                    .build();
+        }
+
+        public int getWidth() {
+            return mWidth;
+        }
+    }
+}
@@ -1,12 +1,14 @@
 package com.goach.simple.library;
 
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v7.widget.AppCompatTextView;
-import android.text.Html;
+import android.text.Spanned;
 import android.util.AttributeSet;
 
-import com.goach.simple.library.utils.DeviceUtil;
-
 /**
  * author: Goach.zhong
  * Date: 2018/11/15 11:02.
@@ -16,6 +18,18 @@ public class RichTextView extends AppCompatTextView {
 
     private GlideImageGetter mGlideImageGetter;
 
+    private Bitmap.Config mBitmapConfig = Bitmap.Config.ARGB_8888;
+
+    private GlideImageGetter.AspectRatioProvider mAspectRatioProvider;
+
+    private int mVisibleTextEnd = Integer.MAX_VALUE;
+
+    private boolean mImagePreview;
+
+    private float mThumbnailScale;
+
+    private GlideImageGetter.ThumbnailUrlProvider mThumbnailUrlProvider;
+
     public RichTextView(Context context) {
         this(context, null);
     }
@@ -31,13 +45,163 @@ public class RichTextView extends AppCompatTextView {
      * 设置富文本
      */
     public void setHtml(final String source) {
+        setParsedHtml(HtmlParser.parse(source));
+    }
+    /**
+     * 设置HtmlParser解析好的富文本，图片在这里开始加载
+     */
+    public void setParsedHtml(Spanned parsed) {
+        setText(bindParsedHtml(parsed));
+    }
+
+    /**
+     * 同{@link #setParsedHtml(Spanned)}，指定BufferType，追加过的文字是EDITABLE，
+     * 传NORMAL换回StaticLayout
+     */
+    public void setParsedHtml(Spanned parsed, BufferType type) {
+        setText(bindParsedHtml(parsed), type);
+    }
+
+    private CharSequence bindParsedHtml(Spanned parsed) {
+        if(!HtmlParser.hasImages(parsed)){
+            if(mGlideImageGetter != null){
+                mGlideImageGetter.clear();
+            }
+            return parsed == null ? "" : parsed;
+        }
+        return obtainImageGetter().bind(parsed);
+    }
+
+    /**
+     * 在现有文字后面追加HtmlParser解析好的富文本，文字变成Editable，
+     * 之后的追加只重新排版改动的段落
+     */
+    public void appendParsedHtml(Spanned parsed) {
+        if(parsed == null || parsed.length() == 0){
+            return;
+        }
+        if(!HtmlParser.hasImages(parsed)){
+            append(parsed);
+            return;
+        }
+        append(obtainImageGetter().bindAppended(parsed, length()));
+    }
+
+    private GlideImageGetter obtainImageGetter() {
         if(mGlideImageGetter == null){
-            mGlideImageGetter = new GlideImageGetter(getContext(),RichTextView.this,
-                    DeviceUtil.instance().getScreenPixelsWidth(getContext())
-                            - DeviceUtil.instance().dip2px(30,getContext()));
+            mGlideImageGetter = new GlideImageGetter(getContext(),RichTextView.this, getImageWidth());
+            mGlideImageGetter.setBitmapConfig(mBitmapConfig);
+            mGlideImageGetter.setAspectRatioProvider(mAspectRatioProvider);
+            mGlideImageGetter.setThumbnailScale(mThumbnailScale);
+            mGlideImageGetter.setThumbnailUrlProvider(mThumbnailUrlProvider);
+            mGlideImageGetter.setPreview(mImagePreview);
+            mGlideImageGetter.setVisibleTextEnd(mVisibleTextEnd);
+        }
+        return mGlideImageGetter;
+    }
+
+    /**
+     * 图片解码用的Bitmap.Config，不透明的图片可以用RGB_565节省一半内存
+     */
+    public void setImageBitmapConfig(@NonNull Bitmap.Config config) {
+        mBitmapConfig = config;
+        if(mGlideImageGetter != null){
+            mGlideImageGetter.setBitmapConfig(config);
+        }
+    }
+
+    /**
+     * 提供图片宽高比，<img>没有width/height属性的时候用来提前占位
+     */
+    public void setImageAspectRatioProvider(@Nullable GlideImageGetter.AspectRatioProvider provider) {
+        mAspectRatioProvider = provider;
+        if(mGlideImageGetter != null){
+            mGlideImageGetter.setAspectRatioProvider(provider);
+        }
+    }
+
+    /**
+     * 设置显示区域的结束位置，之后的图片先不加载，默认全部加载
+     */
+    public void setVisibleTextEnd(int end) {
+        mVisibleTextEnd = end;
+        if(mGlideImageGetter != null){
+            mGlideImageGetter.setVisibleTextEnd(end);
+        }
+    }
+
+    /**
+     * 预览模式下图片先加载小图，关掉之后换成原图，ExpandableTextView收起的时候打开
+     */
+    public void setImagePreview(boolean preview) {
+        mImagePreview = preview;
+        if(mGlideImageGetter != null){
+            mGlideImageGetter.setPreview(preview);
+        }
+    }
+
+    /**
+     * 预览模式下小图的宽度比例，比如0.25f，默认0不加载小图
+     */
+    public void setImageThumbnailScale(float scale) {
+        mThumbnailScale = scale;
+        if(mGlideImageGetter != null){
+            mGlideImageGetter.setThumbnailScale(scale);
+        }
+    }
+
+    /**
+     * 预览模式下小图的url，比如服务端的缩略图
+     */
+    public void setImageThumbnailUrlProvider(@Nullable GlideImageGetter.ThumbnailUrlProvider provider) {
+        mThumbnailUrlProvider = provider;
+        if(mGlideImageGetter != null){
+            mGlideImageGetter.setThumbnailUrlProvider(provider);
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if(mGlideImageGetter != null){
+            mGlideImageGetter.onAttached();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if(mGlideImageGetter != null){
+            mGlideImageGetter.onDetached();
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if(mGlideImageGetter != null){
+            mGlideImageGetter.onDraw();
+        }
+        super.onDraw(canvas);
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if(mGlideImageGetter != null){
+            mGlideImageGetter.setWidth(getImageWidth());
+        }
+    }
+
+    /**
+     * 图片的显示宽度，没有测量过的时候用ExpandableTextView的宽度，都没有的话等onSizeChanged
+     */
+    private int getImageWidth() {
+        int width = getWidth();
+        if(width <= 0 && getParent() instanceof ExpandableTextView){
+            ExpandableTextView parent = (ExpandableTextView) getParent();
+            width = parent.getWidth() - parent.getPaddingLeft() - parent.getPaddingRight();
         }
-        CharSequence htmlText = Html.fromHtml(source, mGlideImageGetter, null);
-        setText(htmlText);
+        return width <= 0 ? 0 : width - getCompoundPaddingLeft() - getCompoundPaddingRight();
     }
     public void clear(){
         if(mGlideImageGetter != null){
@@ -0,0 +1,71 @@
+package com.goach.simple.library;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
+import android.text.Spanned;
+import android.text.SpannedString;
+
+/**
+ * author: Goach.zhong
+ * Date: 2026/10/18 11:05.
+ * Des:Html解析结果的LRU缓存，key为html原文，RecyclerView来回滑动时不用重复解析。
+ * 缓存的是HtmlParser的结果，图片还是占位，所以可以被多个View共用
+ */
+public class SpannedCache extends LruCache<String, Spanned> {
+
+    /* The default weight, about 1MB of chars */
+    private static final int DEFAULT_MAX_CHARS = 512 * 1024;
+
+    private static volatile SpannedCache sInstance = new SpannedCache(DEFAULT_MAX_CHARS, true);
+
+    private final boolean mWeighByChars;
+
+    /**
+     * @param maxSize - max number of entries, or max number of chars when weighByChars is true
+     * @param weighByChars - true to weigh an entry by the chars of its source and parsed text
+     */
+    public SpannedCache(int maxSize, boolean weighByChars) {
+        super(maxSize);
+        mWeighByChars = weighByChars;
+    }
+
+    /**
+     * @return the shared cache, null if caching is disabled
+     */
+    @Nullable
+    public static SpannedCache getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Replaces the shared cache. A maxSize of 0 or less disables caching.
+     */
+    public static void configure(int maxSize, boolean weighByChars) {
+        SpannedCache old = sInstance;
+        sInstance = maxSize > 0 ? new SpannedCache(maxSize, weighByChars) : null;
+        if (old != null) {
+            old.evictAll();
+        }
+    }
+
+    @Override
+    protected int sizeOf(@NonNull String key, @NonNull Spanned value) {
+        return mWeighByChars ? key.length() + value.length() : 1;
+    }
+
+    /**
+     * Stores an immutable copy, so a cached result can be shared across threads and views
+     */
+    void putParsed(@NonNull String source, @NonNull Spanned parsed) {
+        put(source, parsed instanceof SpannedString ? parsed : new SpannedString(parsed));
+    }
+
+    /**
+     * @return the hit rate between 0 and 1, handy for tuning the size
+     */
+    public synchronized float hitRate() {
+        int accesses = hitCount() + missCount();
+        return accesses == 0 ? 0f : hitCount() * 1f / accesses;
+    }
+}
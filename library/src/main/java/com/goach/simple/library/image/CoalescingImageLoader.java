@@ -0,0 +1,180 @@
+package com.goach.simple.library.image;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * author: Goach.zhong
+ * Date: 2026/10/19 14:40.
+ * Des:合并相同的图片请求，同一个url和尺寸同时只有一次加载和解码，
+ * 结果通过Drawable.ConstantState分给每一个请求方，共用同一个Bitmap
+ */
+public class CoalescingImageLoader implements ImageLoader {
+
+    private final ImageLoader mDelegate;
+    private final Map<ImageRequest, Entry> mEntries = new HashMap<>();
+    private final Map<Callback, Entry> mSubscriptions = new HashMap<>();
+    private long mCoalescedCount;
+
+    public CoalescingImageLoader(@NonNull ImageLoader delegate) {
+        mDelegate = delegate;
+    }
+
+    @Override
+    public void load(@NonNull Context context, @NonNull ImageRequest request, @NonNull Callback callback) {
+        cancel(callback);
+        Entry entry = mEntries.get(request);
+        if (entry == null) {
+            entry = new Entry(request);
+            mEntries.put(request, entry);
+            entry.subscribe(callback, request.getPriority());
+            mSubscriptions.put(callback, entry);
+            mDelegate.load(context, request, entry);
+            return;
+        }
+        mCoalescedCount++;
+        entry.subscribe(callback, request.getPriority());
+        mSubscriptions.put(callback, entry);
+        entry.updatePriority();
+        if (entry.mResource != null) {
+            callback.onResourceReady(copyOf(entry.mResource));
+        } else {
+            callback.onLoadStarted(entry.mPlaceholder);
+        }
+    }
+
+    @Override
+    public void cancel(@NonNull Callback callback) {
+        Entry entry = mSubscriptions.remove(callback);
+        if (entry == null) {
+            return;
+        }
+        entry.mSubscribers.remove(callback);
+        entry.mPriorities.remove(callback);
+        if (entry.mSubscribers.isEmpty()) {
+            if (mEntries.get(entry.mRequest) == entry) {
+                mEntries.remove(entry.mRequest);
+            }
+            mDelegate.cancel(entry);
+        } else {
+            entry.updatePriority();
+        }
+    }
+
+    /**
+     * A shared request runs at the highest priority of its subscribers
+     */
+    @Override
+    public void setPriority(@NonNull Callback callback, int priority) {
+        Entry entry = mSubscriptions.get(callback);
+        if (entry != null) {
+            entry.mPriorities.put(callback, priority);
+            entry.updatePriority();
+        }
+    }
+
+    /**
+     * @return the number of loads that joined a request already in flight or loaded
+     */
+    public long getCoalescedCount() {
+        return mCoalescedCount;
+    }
+
+    /**
+     * Every subscriber gets its own drawable, since bounds and callbacks are per drawable.
+     * Drawables from the same ConstantState share the bitmap.
+     */
+    private static Drawable copyOf(Drawable resource) {
+        Drawable.ConstantState state = resource.getConstantState();
+        return state == null ? resource : state.newDrawable();
+    }
+
+    private final class Entry implements Callback {
+        private final ImageRequest mRequest;
+        private final List<Callback> mSubscribers = new ArrayList<>();
+        private final Map<Callback, Integer> mPriorities = new HashMap<>();
+        private int mPriority;
+        private Drawable mResource;
+        private Drawable mPlaceholder;
+
+        Entry(ImageRequest request) {
+            mRequest = request;
+            mPriority = request.getPriority();
+        }
+
+        void subscribe(Callback callback, int priority) {
+            mSubscribers.add(callback);
+            mPriorities.put(callback, priority);
+        }
+
+        void updatePriority() {
+            if (mResource != null) {
+                return;
+            }
+            int priority = Integer.MIN_VALUE;
+            for (int value : mPriorities.values()) {
+                priority = Math.max(priority, value);
+            }
+            if (priority != mPriority) {
+                mPriority = priority;
+                mDelegate.setPriority(this, priority);
+            }
+        }
+
+        @Override
+        public void onLoadStarted(@Nullable Drawable placeholder) {
+            mPlaceholder = placeholder;
+            for (int i = 0; i < mSubscribers.size(); i++) {
+                mSubscribers.get(i).onLoadStarted(placeholder);
+            }
+        }
+
+        @Override
+        public void onResourceReady(@NonNull Drawable resource) {
+            mResource = resource;
+            // a subscriber may cancel others from its callback, e.g. to stay within the memory budget
+            for (Callback subscriber : new ArrayList<>(mSubscribers)) {
+                if (mSubscriptions.get(subscriber) == this) {
+                    subscriber.onResourceReady(copyOf(resource));
+                }
+            }
+        }
+
+        @Override
+        public void onLoadFailed(@Nullable Drawable errorDrawable) {
+            // a later load of the same request tries again
+            detach();
+            for (Callback subscriber : new ArrayList<>(mSubscribers)) {
+                subscriber.onLoadFailed(errorDrawable);
+            }
+        }
+
+        @Override
+        public void onLoadCleared(@Nullable Drawable placeholder) {
+            detach();
+            List<Callback> subscribers = new ArrayList<>(mSubscribers);
+            for (Callback subscriber : subscribers) {
+                mSubscriptions.remove(subscriber);
+            }
+            mSubscribers.clear();
+            mPriorities.clear();
+            for (Callback subscriber : subscribers) {
+                subscriber.onLoadCleared(placeholder);
+            }
+        }
+
+        private void detach() {
+            mResource = null;
+            if (mEntries.get(mRequest) == this) {
+                mEntries.remove(mRequest);
+            }
+        }
+    }
+}
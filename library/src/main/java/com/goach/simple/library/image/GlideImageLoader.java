@@ -0,0 +1,97 @@
+package com.goach.simple.library.image;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.resource.drawable.GlideDrawable;
+import com.bumptech.glide.request.animation.GlideAnimation;
+import com.bumptech.glide.request.target.BaseTarget;
+import com.bumptech.glide.request.target.SizeReadyCallback;
+import com.bumptech.glide.request.target.Target;
+import com.goach.simple.library.utils.GlideUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * author: Goach.zhong
+ * Date: 2026/10/19 14:20.
+ * Des:默认的图片加载，通过GlideUtils用Glide加载
+ */
+public class GlideImageLoader implements ImageLoader {
+
+    private final Map<Callback, CallbackTarget> mTargets = new HashMap<>();
+
+    @Override
+    public void load(@NonNull Context context, @NonNull ImageRequest request, @NonNull Callback callback) {
+        cancel(callback);
+        CallbackTarget target = new CallbackTarget(request, callback);
+        mTargets.put(callback, target);
+        GlideUtils.getInstance().loadDrawable(context, request.getUrl(), target, request.getConfig());
+    }
+
+    @Override
+    public void cancel(@NonNull Callback callback) {
+        CallbackTarget target = mTargets.remove(callback);
+        if (target != null) {
+            target.mCancelled = true;
+            Glide.clear(target);
+        }
+    }
+
+    @Override
+    public void setPriority(@NonNull Callback callback, int priority) {
+        // Glide starts the request right away, scheduling is up to PriorityImageLoader
+    }
+
+    private final class CallbackTarget extends BaseTarget<GlideDrawable> {
+        private final ImageRequest mRequest;
+        private final Callback mCallback;
+        private boolean mCancelled;
+
+        CallbackTarget(ImageRequest request, Callback callback) {
+            mRequest = request;
+            mCallback = callback;
+        }
+
+        @Override
+        public void getSize(SizeReadyCallback cb) {
+            cb.onSizeReady(toGlideSize(mRequest.getWidth()), toGlideSize(mRequest.getHeight()));
+        }
+
+        @Override
+        public void onLoadStarted(Drawable placeholder) {
+            if (!mCancelled) {
+                mCallback.onLoadStarted(placeholder);
+            }
+        }
+
+        @Override
+        public void onLoadFailed(Exception e, Drawable errorDrawable) {
+            if (!mCancelled) {
+                mCallback.onLoadFailed(errorDrawable);
+            }
+        }
+
+        @Override
+        public void onResourceReady(GlideDrawable resource, GlideAnimation<? super GlideDrawable> glideAnimation) {
+            if (!mCancelled) {
+                mCallback.onResourceReady(resource);
+            }
+        }
+
+        @Override
+        public void onLoadCleared(Drawable placeholder) {
+            if (!mCancelled) {
+                mTargets.remove(mCallback);
+                mCallback.onLoadCleared(placeholder);
+            }
+        }
+    }
+
+    private static int toGlideSize(int size) {
+        return size > 0 ? size : Target.SIZE_ORIGINAL;
+    }
+}
@@ -0,0 +1,44 @@
+package com.goach.simple.library.image;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * author: Goach.zhong
+ * Date: 2026/10/19 14:10.
+ * Des:图片加载接口，GlideImageGetter通过它加载<img>，默认用Glide实现，见GlideImageLoader。
+ * 所有方法和回调都在主线程
+ */
+public interface ImageLoader {
+
+    /**
+     * Starts loading the image, the result is delivered to the callback.
+     * Loading again with the same callback replaces its previous request.
+     */
+    void load(@NonNull Context context, @NonNull ImageRequest request, @NonNull Callback callback);
+
+    /**
+     * Cancels the request of the callback and releases its resource. The callback isn't called anymore.
+     */
+    void cancel(@NonNull Callback callback);
+
+    /**
+     * Updates the priority of a request that is still waiting, e.g. when its view was attached
+     */
+    void setPriority(@NonNull Callback callback, int priority);
+
+    interface Callback {
+        void onLoadStarted(@Nullable Drawable placeholder);
+
+        void onResourceReady(@NonNull Drawable resource);
+
+        void onLoadFailed(@Nullable Drawable errorDrawable);
+
+        /**
+         * Called when the loader released the resource on its own, e.g. when the Activity was destroyed
+         */
+        void onLoadCleared(@Nullable Drawable placeholder);
+    }
+}
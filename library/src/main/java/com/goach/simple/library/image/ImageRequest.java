@@ -0,0 +1,93 @@
+package com.goach.simple.library.image;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+
+/**
+ * author: Goach.zhong
+ * Date: 2026/10/19 14:12.
+ * Des:一次图片加载的参数，url、尺寸和Bitmap.Config都相同的请求可以合并
+ */
+public final class ImageRequest {
+    /* The original size in this dimension */
+    public static final int SIZE_ORIGINAL = 0;
+
+    /* Images of offscreen rows, e.g. prefetched ones */
+    public static final int PRIORITY_LOW = 0;
+    /* Images inside the visible text of an attached view */
+    public static final int PRIORITY_HIGH = 1;
+
+    private final String mUrl;
+    private final int mWidth;
+    private final int mHeight;
+    private final Bitmap.Config mConfig;
+    private final int mPriority;
+
+    public ImageRequest(@NonNull String url, int width, int height, @NonNull Bitmap.Config config) {
+        this(url, width, height, config, PRIORITY_HIGH);
+    }
+
+    /**
+     * @param width - the target width, {@link #SIZE_ORIGINAL} to keep the original width
+     * @param height - the target height, {@link #SIZE_ORIGINAL} to keep the original height
+     * @param priority - scheduling hint, not part of equality, so requests of different priority are coalesced
+     */
+    public ImageRequest(@NonNull String url, int width, int height, @NonNull Bitmap.Config config, int priority) {
+        mUrl = url;
+        mWidth = width;
+        mHeight = height;
+        mConfig = config;
+        mPriority = priority;
+    }
+
+    @NonNull
+    public String getUrl() {
+        return mUrl;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    @NonNull
+    public Bitmap.Config getConfig() {
+        return mConfig;
+    }
+
+    public int getPriority() {
+        return mPriority;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ImageRequest)) {
+            return false;
+        }
+        ImageRequest request = (ImageRequest) o;
+        return mWidth == request.mWidth
+                && mHeight == request.mHeight
+                && mConfig == request.mConfig
+                && mUrl.equals(request.mUrl);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mUrl.hashCode();
+        result = 31 * result + mWidth;
+        result = 31 * result + mHeight;
+        result = 31 * result + mConfig.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ImageRequest{" + mUrl + ", " + mWidth + "x" + mHeight + ", " + mConfig + "}";
+    }
+}
@@ -0,0 +1,183 @@
+package com.goach.simple.library.image;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * author: Goach.zhong
+ * Date: 2026/10/19 16:20.
+ * Des:限制同时进行的图片加载个数，排队的请求按优先级开始，可见的图片先加载。
+ * 同一优先级后来的先加载，快速滑动的时候最新绑定的item才是屏幕上的。
+ * 被取消的请求直接从队列里删掉，不会再开始
+ */
+public class PriorityImageLoader implements ImageLoader {
+
+    public static final int DEFAULT_MAX_CONCURRENT_LOADS = 4;
+
+    private final ImageLoader mDelegate;
+    private final Map<Callback, Task> mTasks = new HashMap<>();
+    private final List<Task> mQueue = new ArrayList<>();
+    private int mMaxConcurrentLoads = DEFAULT_MAX_CONCURRENT_LOADS;
+    private int mRunningCount;
+    private long mSequence;
+    private boolean mDispatching;
+
+    public PriorityImageLoader(@NonNull ImageLoader delegate) {
+        mDelegate = delegate;
+    }
+
+    public void setMaxConcurrentLoads(int max) {
+        mMaxConcurrentLoads = Math.max(1, max);
+        dispatch();
+    }
+
+    @Override
+    public void load(@NonNull Context context, @NonNull ImageRequest request, @NonNull Callback callback) {
+        cancel(callback);
+        Task task = new Task(context, request, callback);
+        mTasks.put(callback, task);
+        mQueue.add(task);
+        dispatch();
+    }
+
+    @Override
+    public void cancel(@NonNull Callback callback) {
+        Task task = mTasks.remove(callback);
+        if (task == null) {
+            return;
+        }
+        task.mCancelled = true;
+        if (!task.mStarted) {
+            mQueue.remove(task);
+            return;
+        }
+        task.finish();
+        mDelegate.cancel(task);
+        dispatch();
+    }
+
+    @Override
+    public void setPriority(@NonNull Callback callback, int priority) {
+        Task task = mTasks.get(callback);
+        if (task != null && !task.mStarted) {
+            task.mPriority = priority;
+        }
+    }
+
+    /**
+     * @return the number of requests waiting for a free slot
+     */
+    public int getQueuedCount() {
+        return mQueue.size();
+    }
+
+    /**
+     * @return the number of requests started and not finished yet
+     */
+    public int getRunningCount() {
+        return mRunningCount;
+    }
+
+    private void dispatch() {
+        // the delegate may deliver synchronously from its memory cache and finish a task while we loop
+        if (mDispatching) {
+            return;
+        }
+        mDispatching = true;
+        try {
+            while (mRunningCount < mMaxConcurrentLoads && !mQueue.isEmpty()) {
+                Task task = mQueue.remove(nextIndex());
+                task.mStarted = true;
+                task.mRunning = true;
+                mRunningCount++;
+                mDelegate.load(task.mContext, task.mRequest, task);
+            }
+        } finally {
+            mDispatching = false;
+        }
+    }
+
+    private int nextIndex() {
+        int best = 0;
+        for (int i = 1; i < mQueue.size(); i++) {
+            Task task = mQueue.get(i);
+            Task current = mQueue.get(best);
+            if (task.mPriority > current.mPriority
+                    || (task.mPriority == current.mPriority && task.mSequence > current.mSequence)) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private final class Task implements Callback {
+        private final Context mContext;
+        private final ImageRequest mRequest;
+        private final Callback mCallback;
+        private final long mSequence;
+        private int mPriority;
+        private boolean mStarted;
+        private boolean mRunning;
+        private boolean mCancelled;
+
+        Task(Context context, ImageRequest request, Callback callback) {
+            mContext = context;
+            mRequest = request;
+            mCallback = callback;
+            mSequence = PriorityImageLoader.this.mSequence++;
+            mPriority = request.getPriority();
+        }
+
+        /**
+         * Frees the slot, the task stays registered so cancel still releases the resource
+         */
+        void finish() {
+            if (mRunning) {
+                mRunning = false;
+                mRunningCount--;
+            }
+        }
+
+        @Override
+        public void onLoadStarted(@Nullable Drawable placeholder) {
+            if (!mCancelled) {
+                mCallback.onLoadStarted(placeholder);
+            }
+        }
+
+        @Override
+        public void onResourceReady(@NonNull Drawable resource) {
+            finish();
+            if (!mCancelled) {
+                mCallback.onResourceReady(resource);
+            }
+            dispatch();
+        }
+
+        @Override
+        public void onLoadFailed(@Nullable Drawable errorDrawable) {
+            finish();
+            if (!mCancelled) {
+                mCallback.onLoadFailed(errorDrawable);
+            }
+            dispatch();
+        }
+
+        @Override
+        public void onLoadCleared(@Nullable Drawable placeholder) {
+            finish();
+            if (!mCancelled) {
+                mTasks.remove(mCallback);
+                mCallback.onLoadCleared(placeholder);
+            }
+            dispatch();
+        }
+    }
+}
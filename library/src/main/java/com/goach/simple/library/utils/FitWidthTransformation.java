@@ -0,0 +1,46 @@
+package com.goach.simple.library.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.load.resource.bitmap.BitmapTransformation;
+
+/**
+ * author: Goach.zhong
+ * Date: 2026/10/19 09:40.
+ * Des:图片比目标宽度大时按比例缩小到目标宽度，小图不放大，避免解码出比显示区域更大的Bitmap
+ */
+public class FitWidthTransformation extends BitmapTransformation {
+    private static final int PAINT_FLAGS = Paint.DITHER_FLAG | Paint.FILTER_BITMAP_FLAG;
+
+    public FitWidthTransformation(Context context) {
+        super(context);
+    }
+
+    @Override
+    protected Bitmap transform(BitmapPool pool, Bitmap toTransform, int outWidth, int outHeight) {
+        if (outWidth <= 0 || toTransform.getWidth() <= outWidth) {
+            return toTransform;
+        }
+        float scale = outWidth * 1.0f / toTransform.getWidth();
+        int height = Math.max(1, Math.round(toTransform.getHeight() * scale));
+        Bitmap.Config config = toTransform.getConfig() != null ? toTransform.getConfig() : Bitmap.Config.ARGB_8888;
+        Bitmap result = pool.get(outWidth, height, config);
+        if (result == null) {
+            result = Bitmap.createBitmap(outWidth, height, config);
+        }
+        Matrix matrix = new Matrix();
+        matrix.setScale(scale, scale);
+        new Canvas(result).drawBitmap(toTransform, matrix, new Paint(PAINT_FLAGS));
+        return result;
+    }
+
+    @Override
+    public String getId() {
+        return "com.goach.simple.library.utils.FitWidthTransformation";
+    }
+}
@@ -1,12 +1,16 @@
 package com.goach.simple.library.utils;
 
 import android.content.Context;
+import android.graphics.Bitmap;
+
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.DecodeFormat;
 import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.load.resource.drawable.GlideDrawable;
 import com.bumptech.glide.load.resource.transcode.BitmapToGlideDrawableTranscoder;
 import com.bumptech.glide.request.target.SimpleTarget;
+import com.bumptech.glide.request.target.Target;
 
 /**
  * author: Goach.zhong.
@@ -42,6 +46,23 @@ public class GlideUtils {
                 .into(target);
     }
 
+    /**
+     * 按照target的尺寸解码，比目标宽度大的图片会被缩小到目标宽度
+     *
+     * @param config - Bitmap.Config.RGB_565 decodes opaque images at half the memory
+     */
+    public void loadDrawable(Context ctx, String mUrl, Target<GlideDrawable> target, Bitmap.Config config){
+        createGlide(ctx)
+                .fromString()
+                .asBitmap()
+                .transcode(new BitmapToGlideDrawableTranscoder(ctx), GlideDrawable.class)
+                .diskCacheStrategy(DiskCacheStrategy.ALL)
+                .format(config == Bitmap.Config.RGB_565 ? DecodeFormat.PREFER_RGB_565 : DecodeFormat.PREFER_ARGB_8888)
+                .transform(new FitWidthTransformation(ctx))
+                .load(mUrl)
+                .into(target);
+    }
+
     private RequestManager createGlide(Context ctx) {
         return Glide.with(ctx);
     }
@@ -0,0 +1,156 @@
+package com.goach.simple.library;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class DiskLayoutMetricsCacheTest {
+
+    private static final long FINGERPRINT = 42L;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mFile;
+
+    @Before
+    public void setUp() {
+        mFile = new File(mFolder.getRoot(), "metrics");
+    }
+
+    @Test
+    public void flushedEntriesAreFoundAfterReopening() {
+        DiskLayoutMetricsCache cache = new DiskLayoutMetricsCache(mFile, FINGERPRINT, 1000);
+        for (int i = 0; i < 500; i++) {
+            cache.put(key(i), new LayoutMetrics(i, i * 10, i * 5, 2));
+        }
+        cache.flush();
+
+        DiskLayoutMetricsCache reopened = new DiskLayoutMetricsCache(mFile, FINGERPRINT, 1000);
+        assertEquals(500, reopened.getCount());
+        for (int i = 0; i < 500; i++) {
+            LayoutMetrics metrics = reopened.get(key(i));
+            assertNotNull(metrics);
+            assertEquals(i, metrics.getLineCount());
+            assertEquals(i * 10, metrics.getFullHeight());
+            assertEquals(i * 5, metrics.getCollapsedHeight());
+            assertEquals(i > 2, metrics.isToggleVisible());
+        }
+        assertNull(reopened.get(key(500)));
+    }
+
+    @Test
+    public void flushMergesWithTheFile() {
+        DiskLayoutMetricsCache cache = new DiskLayoutMetricsCache(mFile, FINGERPRINT, 1000);
+        cache.put(key(1), new LayoutMetrics(1, 10, 10, 2));
+        cache.flush();
+        cache.put(key(2), new LayoutMetrics(3, 30, 20, 2));
+        cache.put(key(1), new LayoutMetrics(4, 40, 20, 2));
+        cache.flush();
+
+        DiskLayoutMetricsCache reopened = new DiskLayoutMetricsCache(mFile, FINGERPRINT, 1000);
+        assertEquals(2, reopened.getCount());
+        assertEquals(4, reopened.get(key(1)).getLineCount());
+        assertEquals(3, reopened.get(key(2)).getLineCount());
+    }
+
+    @Test
+    public void newEntriesAreKeptOverTheLimit() {
+        DiskLayoutMetricsCache cache = new DiskLayoutMetricsCache(mFile, FINGERPRINT, 2);
+        cache.put(key(1), new LayoutMetrics(1, 10, 10, 2));
+        cache.put(key(2), new LayoutMetrics(1, 10, 10, 2));
+        cache.flush();
+        cache.put(key(3), new LayoutMetrics(1, 10, 10, 2));
+        cache.flush();
+
+        DiskLayoutMetricsCache reopened = new DiskLayoutMetricsCache(mFile, FINGERPRINT, 2);
+        assertEquals(2, reopened.getCount());
+        assertNotNull(reopened.get(key(3)));
+    }
+
+    @Test
+    public void recentlyReadEntriesAreKeptOverTheLimit() {
+        DiskLayoutMetricsCache cache = new DiskLayoutMetricsCache(mFile, FINGERPRINT, 2);
+        cache.put(key(1), new LayoutMetrics(1, 10, 10, 2));
+        cache.put(key(2), new LayoutMetrics(1, 10, 10, 2));
+        cache.flush();
+        assertNotNull(cache.get(key(1)));
+        cache.put(key(3), new LayoutMetrics(1, 10, 10, 2));
+        cache.flush();
+
+        DiskLayoutMetricsCache reopened = new DiskLayoutMetricsCache(mFile, FINGERPRINT, 2);
+        assertEquals(2, reopened.getCount());
+        assertNotNull(reopened.get(key(1)));
+        assertNull(reopened.get(key(2)));
+        assertNotNull(reopened.get(key(3)));
+    }
+
+    @Test
+    public void configurationChangeClearsTheMemoryCacheToo() {
+        LayoutMetricsCache memory = LayoutMetricsCache.getInstance();
+        assertNotNull(memory);
+        memory.putMetrics(key(1), new LayoutMetrics(1, 10, 10, 2));
+        DiskLayoutMetricsCache cache = new DiskLayoutMetricsCache(mFile, FINGERPRINT, 1000);
+        cache.put(key(1), new LayoutMetrics(1, 10, 10, 2));
+
+        cache.onConfigurationChanged(RuntimeEnvironment.application);
+        assertNull(cache.get(key(1)));
+        assertNull(memory.get(key(1)));
+    }
+
+    @Test
+    public void anotherConfigurationIgnoresTheFile() {
+        DiskLayoutMetricsCache cache = new DiskLayoutMetricsCache(mFile, FINGERPRINT, 1000);
+        cache.put(key(1), new LayoutMetrics(1, 10, 10, 2));
+        cache.flush();
+
+        DiskLayoutMetricsCache reopened = new DiskLayoutMetricsCache(mFile, FINGERPRINT + 1, 1000);
+        assertEquals(0, reopened.getCount());
+        assertNull(reopened.get(key(1)));
+    }
+
+    @Test
+    public void truncatedFileIsIgnored() throws IOException {
+        DiskLayoutMetricsCache cache = new DiskLayoutMetricsCache(mFile, FINGERPRINT, 1000);
+        cache.put(key(1), new LayoutMetrics(1, 10, 10, 2));
+        cache.flush();
+        FileOutputStream out = new FileOutputStream(mFile, true);
+        out.write(new byte[7]);
+        out.close();
+
+        assertNull(new DiskLayoutMetricsCache(mFile, FINGERPRINT, 1000).get(key(1)));
+    }
+
+    @Test
+    public void memoryMissesAreReadFromDisk() {
+        DiskLayoutMetricsCache cache = new DiskLayoutMetricsCache(mFile, FINGERPRINT, 1000);
+        cache.put(key(7), new LayoutMetrics(5, 50, 20, 2));
+        cache.flush();
+        LayoutMetricsCache.setDiskCache(new DiskLayoutMetricsCache(mFile, FINGERPRINT, 1000));
+        try {
+            LayoutMetricsCache memory = new LayoutMetricsCache(10);
+            assertEquals(5, memory.get(key(7)).getLineCount());
+            assertNull(memory.get(key(8)));
+        } finally {
+            LayoutMetricsCache.setDiskCache(null);
+        }
+    }
+
+    private static LayoutMetricsCache.Key key(int i) {
+        // spread the hashes over the whole range, negative ones included
+        return new LayoutMetricsCache.Key(i * 0x9e3779b97f4a7c15L, 480, 7, 2);
+    }
+}
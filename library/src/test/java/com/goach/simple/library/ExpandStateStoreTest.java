@@ -0,0 +1,77 @@
+package com.goach.simple.library;
+
+import android.os.Bundle;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ExpandStateStoreTest {
+
+    @Test
+    public void defaultsToCollapsed() {
+        ExpandStateStore store = new ExpandStateStore();
+        assertFalse(store.isExpanded(0));
+        assertFalse(store.isExpanded(42));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void matchesHashSetUnderRandomUpdates() {
+        ExpandStateStore store = new ExpandStateStore();
+        Set<Long> expected = new HashSet<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 200000; i++) {
+            long id = random.nextInt(5000) - 100;
+            boolean expanded = random.nextBoolean();
+            store.setExpanded(id, expanded);
+            if (expanded) {
+                expected.add(id);
+            } else {
+                expected.remove(id);
+            }
+        }
+        assertEquals(expected.size(), store.size());
+        for (long id = -100; id < 4900; id++) {
+            assertEquals(expected.contains(id), store.isExpanded(id));
+        }
+    }
+
+    @Test
+    public void getExpandedIds() {
+        ExpandStateStore store = new ExpandStateStore();
+        store.setExpanded(0, true);
+        store.setExpanded(Long.MAX_VALUE, true);
+        store.setExpanded(3, true);
+        store.setExpanded(3, false);
+        long[] ids = store.getExpandedIds();
+        Arrays.sort(ids);
+        assertArrayEquals(new long[]{0, Long.MAX_VALUE}, ids);
+    }
+
+    @Test
+    public void saveAndRestoreState() {
+        ExpandStateStore store = new ExpandStateStore();
+        for (long id = 1; id <= 100000; id += 2) {
+            store.setExpanded(id, true);
+        }
+        Bundle bundle = new Bundle();
+        store.saveState(bundle, "expanded");
+
+        ExpandStateStore restored = new ExpandStateStore();
+        restored.restoreState(bundle, "expanded");
+        assertEquals(store.size(), restored.size());
+        assertTrue(restored.isExpanded(99999));
+        assertFalse(restored.isExpanded(100000));
+    }
+}
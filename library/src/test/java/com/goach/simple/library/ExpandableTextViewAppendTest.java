@@ -0,0 +1,77 @@
+package com.goach.simple.library;
+
+import android.content.Context;
+import android.text.DynamicLayout;
+import android.text.Editable;
+import android.view.View;
+import android.widget.TextView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ExpandableTextViewAppendTest {
+
+    private ExpandableTextViewFixture mFixture;
+    private ExpandableTextView mView;
+    private TextView mToggle;
+
+    @Before
+    public void setUp() {
+        Context context = RuntimeEnvironment.application;
+        mFixture = new ExpandableTextViewFixture(context);
+        mView = mFixture.mView;
+        mToggle = mFixture.mToggle;
+        mView.setText("start");
+        mFixture.layout();
+    }
+
+    @Test
+    public void toggleShowsOnceTextOutgrowsCollapsedLines() {
+        assertEquals(View.GONE, mToggle.getVisibility());
+        for (int i = 0; i < 10; i++) {
+            mView.appendHtml("<br>line " + i);
+            mFixture.layout();
+        }
+        assertEquals(View.VISIBLE, mToggle.getVisibility());
+        assertTrue(mView.getText() instanceof Editable);
+        assertTrue(mView.getText().toString().endsWith("line 9"));
+    }
+
+    @Test
+    public void expandedViewGrowsWithAppendedText() {
+        for (int i = 0; i < 10; i++) {
+            mView.appendText("\nline " + i);
+        }
+        mFixture.layout();
+        mView.onClick(mToggle);
+        mView.getToggleAnimator().end();
+        mFixture.layout();
+        int height = mView.getHeight();
+
+        for (int i = 0; i < 10; i++) {
+            mView.appendText("\nmore " + i);
+        }
+        mFixture.layout();
+        assertTrue(mView.getHeight() > height);
+    }
+
+    @Test
+    public void setTextAfterAppendIsLaidOutStatically() {
+        mView.appendText("\nline");
+        mFixture.layout();
+        assertTrue(mFixture.mTextView.getLayout() instanceof DynamicLayout);
+
+        mView.setText("other<br>item");
+        mFixture.layout();
+        assertFalse(mView.getText() instanceof Editable);
+        assertFalse(mFixture.mTextView.getLayout() instanceof DynamicLayout);
+    }
+}
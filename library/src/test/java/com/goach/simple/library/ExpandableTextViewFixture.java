@@ -0,0 +1,46 @@
+package com.goach.simple.library;
+
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+/**
+ * The ExpandableTextView of the expandable_text layout, built in code: the RichTextView and
+ * the toggle TextView, inflated and laid out like a list row.
+ */
+final class ExpandableTextViewFixture {
+
+    /* The row width the tests lay out at */
+    static final int WIDTH = 480;
+
+    final ExpandableTextView mView;
+    final RichTextView mTextView;
+    final TextView mToggle;
+
+    ExpandableTextViewFixture(Context context) {
+        mView = new ExpandableTextView(context);
+        mView.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT));
+        mTextView = new RichTextView(context);
+        mTextView.setId(R.id.expandable_text);
+        mToggle = new TextView(context);
+        mToggle.setId(R.id.expandable_state_text);
+        mView.addView(mTextView);
+        mView.addView(mToggle);
+        mView.onFinishInflate();
+    }
+
+    void layout() {
+        layout(WIDTH);
+    }
+
+    void layout(int width) {
+        layoutWithSpec(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY));
+    }
+
+    void layoutWithSpec(int widthMeasureSpec) {
+        mView.measure(widthMeasureSpec, View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        mView.layout(0, 0, mView.getMeasuredWidth(), mView.getMeasuredHeight());
+    }
+}
@@ -0,0 +1,144 @@
+package com.goach.simple.library;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.support.annotation.NonNull;
+import android.widget.TextView;
+
+import com.goach.simple.library.image.ImageLoader;
+import com.goach.simple.library.image.ImageRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Collapsed, the images load as thumbnails and are upgraded to the full images once the
+ * expand animation has ended.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ExpandableTextViewImagePreviewTest {
+
+    private ImageLoader mOriginalLoader;
+    private FakeLoader mLoader;
+    private ExpandableTextViewFixture mFixture;
+    private ExpandableTextView mView;
+    private RichTextView mTextView;
+    private TextView mToggle;
+
+    @Before
+    public void setUp() {
+        mOriginalLoader = GlideImageGetter.getDefaultImageLoader();
+        mLoader = new FakeLoader();
+        GlideImageGetter.setDefaultImageLoader(mLoader);
+
+        Context context = RuntimeEnvironment.application;
+        mFixture = new ExpandableTextViewFixture(context);
+        mView = mFixture.mView;
+        mTextView = mFixture.mTextView;
+        mToggle = mFixture.mToggle;
+        mTextView.setImageThumbnailScale(0.25f);
+    }
+
+    @After
+    public void tearDown() {
+        mTextView.clear();
+        GlideImageGetter.setDefaultImageLoader(mOriginalLoader);
+    }
+
+    @Test
+    public void thumbnailIsUpgradedOnceExpanded() {
+        mView.setText(post("https://example.com/a.png"));
+        mFixture.layout();
+        assertEquals(1, mLoader.mRequests.size());
+        ImageRequest thumbnail = mLoader.mRequests.get(0);
+        mLoader.deliverAll();
+
+        mView.onClick(mToggle);
+        // the thumbnail stays while the view animates
+        assertEquals(1, mLoader.mRequests.size());
+
+        mView.getToggleAnimator().end();
+        assertEquals(2, mLoader.mRequests.size());
+        ImageRequest full = mLoader.mRequests.get(1);
+        assertEquals(thumbnail.getUrl(), full.getUrl());
+        assertTrue(full.getWidth() > thumbnail.getWidth());
+
+        mLoader.deliverAll();
+        assertTrue(mLoader.mPending.isEmpty());
+    }
+
+    @Test
+    public void rebindCancelsTheUpgradeInFlight() {
+        mView.setText(post("https://example.com/a.png"));
+        mFixture.layout();
+        mLoader.deliverAll();
+        mView.onClick(mToggle);
+        mView.getToggleAnimator().end();
+        ImageLoader.Callback upgrade = mLoader.mCallbacks.get(1);
+        assertTrue(mLoader.mPending.contains(upgrade));
+
+        mView.setText(post("https://example.com/b.png"));
+        mFixture.layout();
+        assertTrue(mLoader.mCancelled.contains(upgrade));
+        assertFalse(mLoader.mPending.isEmpty());
+        for (ImageLoader.Callback callback : mLoader.mPending) {
+            assertEquals("https://example.com/b.png",
+                    mLoader.mRequests.get(mLoader.mCallbacks.lastIndexOf(callback)).getUrl());
+        }
+    }
+
+    private static String post(String url) {
+        StringBuilder html = new StringBuilder("<img src=\"").append(url).append("\" width=\"400\" height=\"300\">");
+        for (int i = 0; i < 30; i++) {
+            html.append("<br>line ").append(i);
+        }
+        return html.toString();
+    }
+
+
+    private static class FakeLoader implements ImageLoader {
+        final List<ImageRequest> mRequests = new ArrayList<>();
+        final List<Callback> mCallbacks = new ArrayList<>();
+        final List<Callback> mPending = new ArrayList<>();
+        final List<Callback> mCancelled = new ArrayList<>();
+
+        @Override
+        public void load(@NonNull Context context, @NonNull ImageRequest request, @NonNull Callback callback) {
+            mRequests.add(request);
+            mCallbacks.add(callback);
+            mPending.add(callback);
+        }
+
+        @Override
+        public void cancel(@NonNull Callback callback) {
+            if (mPending.remove(callback)) {
+                mCancelled.add(callback);
+            }
+        }
+
+        @Override
+        public void setPriority(@NonNull Callback callback, int priority) {
+        }
+
+        void deliverAll() {
+            List<Callback> pending = new ArrayList<>(mPending);
+            mPending.clear();
+            for (Callback callback : pending) {
+                Bitmap bitmap = Bitmap.createBitmap(100, 75, Bitmap.Config.ARGB_8888);
+                callback.onResourceReady(new BitmapDrawable(RuntimeEnvironment.application.getResources(), bitmap));
+            }
+        }
+    }
+}
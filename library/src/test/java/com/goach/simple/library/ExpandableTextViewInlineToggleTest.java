@@ -0,0 +1,159 @@
+package com.goach.simple.library;
+
+import android.content.Context;
+import android.text.Editable;
+import android.text.Spannable;
+import android.text.Spanned;
+import android.text.TextWatcher;
+import android.text.method.ArrowKeyMovementMethod;
+import android.text.method.LinkMovementMethod;
+import android.text.style.ClickableSpan;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.TextView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ExpandableTextViewInlineToggleTest {
+
+    private ExpandableTextViewFixture mFixture;
+    private ExpandableTextView mView;
+    private RichTextView mTextView;
+    private TextView mToggle;
+
+    @Before
+    public void setUp() {
+        Context context = RuntimeEnvironment.application;
+        mFixture = new ExpandableTextViewFixture(context);
+        mView = mFixture.mView;
+        mTextView = mFixture.mTextView;
+        mToggle = mFixture.mToggle;
+        mView.setInlineToggleEnabled(true);
+    }
+
+    @Test
+    public void shortTextHasNoLabel() {
+        mView.setText("short");
+        mFixture.layout();
+        assertEquals("short", mTextView.getText().toString());
+        assertEquals(View.GONE, mToggle.getVisibility());
+    }
+
+    @Test
+    public void collapsedTextEndsWithExpandLabel() {
+        mView.setText(longHtml());
+        mFixture.layout();
+        String expand = RuntimeEnvironment.application.getString(R.string.expandable_expand);
+        CharSequence text = mTextView.getText();
+        assertEquals(View.GONE, mToggle.getVisibility());
+        assertTrue(text.toString().endsWith("\u2026" + expand));
+        assertTrue(mTextView.getLineCount() <= 2);
+        assertLabelIsClickable(text, expand);
+    }
+
+    @Test
+    public void expandingAppendsCollapseLabel() {
+        mView.setText(longHtml());
+        mFixture.layout();
+        int collapsedHeight = mView.getHeight();
+
+        mView.onClick(mTextView);
+        mView.getToggleAnimator().end();
+        mFixture.layout();
+        String collapse = RuntimeEnvironment.application.getString(R.string.expandable_collapse);
+        assertTrue(mTextView.getText().toString().endsWith("line 9" + collapse));
+        assertTrue(mView.getHeight() > collapsedHeight);
+
+        mView.onClick(mTextView);
+        mView.getToggleAnimator().end();
+        String expand = RuntimeEnvironment.application.getString(R.string.expandable_expand);
+        assertTrue(mTextView.getText().toString().endsWith(expand));
+    }
+
+    @Test
+    public void disablingRestoresPlainText() {
+        mView.setText(longHtml());
+        mFixture.layout();
+        mView.setInlineToggleEnabled(false);
+        mFixture.layout();
+        assertTrue(mTextView.getText().toString().endsWith("line 9"));
+        assertEquals(View.VISIBLE, mToggle.getVisibility());
+    }
+
+    @Test
+    public void disablingRestoresTheMovementMethod() {
+        mView.setInlineToggleEnabled(false);
+        mTextView.setMovementMethod(ArrowKeyMovementMethod.getInstance());
+        mView.setInlineToggleEnabled(true);
+        assertTrue(mTextView.getMovementMethod() instanceof LinkMovementMethod);
+
+        mView.setInlineToggleEnabled(false);
+        assertSame(ArrowKeyMovementMethod.getInstance(), mTextView.getMovementMethod());
+    }
+
+    @Test
+    public void linksInTheTextAreNotClicked() {
+        mView.setText("<a href=\"https://example.com\">link</a> " + longHtml());
+        mFixture.layout();
+        Spannable text = (Spannable) mTextView.getText();
+        float x = mTextView.getTotalPaddingLeft() + 1;
+        float y = mTextView.getTotalPaddingTop() + 1;
+        MotionEvent down = MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, x, y, 0);
+        MotionEvent up = MotionEvent.obtain(0, 10, MotionEvent.ACTION_UP, x, y, 0);
+        assertFalse(mTextView.getMovementMethod().onTouchEvent(mTextView, text, down));
+        assertFalse(mTextView.getMovementMethod().onTouchEvent(mTextView, text, up));
+        down.recycle();
+        up.recycle();
+    }
+
+    @Test
+    public void relayoutSetsTheTextOnce() {
+        mView.setText(longHtml());
+        mFixture.layout();
+        final int[] changes = new int[1];
+        mTextView.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+                changes[0]++;
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+            }
+        });
+        mView.resetMeasure();
+        mFixture.layout();
+        assertEquals(1, changes[0]);
+        String expand = RuntimeEnvironment.application.getString(R.string.expandable_expand);
+        assertTrue(mTextView.getText().toString().endsWith(expand));
+    }
+
+    private static void assertLabelIsClickable(CharSequence text, String label) {
+        assertTrue(text instanceof Spanned);
+        Spanned spanned = (Spanned) text;
+        ClickableSpan[] spans = spanned.getSpans(text.length() - label.length(), text.length(), ClickableSpan.class);
+        assertEquals(1, spans.length);
+        assertEquals(text.length() - label.length(), spanned.getSpanStart(spans[0]));
+    }
+
+    private static String longHtml() {
+        StringBuilder html = new StringBuilder("start");
+        for (int i = 0; i < 10; i++) {
+            html.append("<br>line ").append(i);
+        }
+        return html.toString();
+    }
+}
@@ -0,0 +1,77 @@
+package com.goach.simple.library;
+
+import android.app.Activity;
+import android.view.View;
+import android.widget.TextView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ExpandableTextViewPreviewParseTest {
+
+    private ExpandableTextViewFixture mFixture;
+    private ExpandableTextView mView;
+    private TextView mToggle;
+
+    @Before
+    public void setUp() {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        mFixture = new ExpandableTextViewFixture(activity);
+        mView = mFixture.mView;
+        mToggle = mFixture.mToggle;
+        activity.setContentView(mView);
+        mView.setPreviewParseEnabled(true);
+        SpannedCache.getInstance().evictAll();
+        ShadowLooper.pauseMainLooper();
+    }
+
+    @Test
+    public void previewFillingTheCollapsedLinesStaysBound() {
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            html.append("<b>line</b> ").append(i).append("<br>");
+        }
+        mView.setText(html.toString());
+        mFixture.layout(480);
+        ShadowLooper.runUiThreadTasks();
+        assertTrue(mView.isPreviewTruncated());
+        assertEquals(View.VISIBLE, mToggle.getVisibility());
+    }
+
+    @Test
+    public void shortPreviewIsReplacedAfterTheMeasure() {
+        // a single paragraph, wide enough to fit the preview on one line
+        StringBuilder html = new StringBuilder("<p>");
+        for (int i = 0; i < 3000; i++) {
+            html.append("word ");
+        }
+        html.append("end</p>");
+        mView.setText(html.toString());
+        mFixture.layout(1000000);
+        // not swapped in the middle of the measure
+        assertTrue(mView.isPreviewTruncated());
+
+        ShadowLooper.runUiThreadTasks();
+        assertFalse(mView.isPreviewTruncated());
+        assertTrue(mView.getText().toString().endsWith("end"));
+    }
+
+    @Test
+    public void previewOfAShortSourceLooksUpTheCacheOnce() {
+        SpannedCache cache = SpannedCache.getInstance();
+        int misses = cache.missCount();
+        HtmlParser.Preview preview = HtmlParser.parsePreview("<b>short</b>", 1000);
+        assertFalse(preview.isTruncated());
+        assertEquals(misses + 1, cache.missCount());
+        assertSame(preview.getParsed(), cache.get("<b>short</b>"));
+    }
+}
@@ -0,0 +1,140 @@
+package com.goach.simple.library;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.util.SparseBooleanArray;
+import android.view.View;
+
+import com.goach.simple.library.image.ImageLoader;
+import com.goach.simple.library.image.ImageRequest;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ExpandableTextViewRebindTest {
+
+    private ExpandableTextViewFixture mFixture;
+    private ExpandableTextView mView;
+    private RichTextView mTextView;
+
+    @Before
+    public void setUp() {
+        Context context = RuntimeEnvironment.application;
+        mFixture = new ExpandableTextViewFixture(context);
+        mView = mFixture.mView;
+        mTextView = mFixture.mTextView;
+    }
+
+    @Test
+    public void sameContentIsNotBoundAgain() {
+        mView.setText(longHtml());
+        mFixture.layout();
+        CharSequence bound = mTextView.getText();
+
+        mView.setText(longHtml());
+        assertSame(bound, mTextView.getText());
+        assertFalse(mView.isLayoutRequested());
+    }
+
+    @Test
+    public void sameContentAtMostWidthIsNotBoundAgain() {
+        mView.setText(longHtml());
+        mFixture.layoutWithSpec(View.MeasureSpec.makeMeasureSpec(480, View.MeasureSpec.AT_MOST));
+        CharSequence bound = mTextView.getText();
+
+        mView.setText(longHtml());
+        assertSame(bound, mTextView.getText());
+        assertFalse(mView.isLayoutRequested());
+    }
+
+    @Test
+    public void clearedContentIsBoundAgain() {
+        ImageLoader original = GlideImageGetter.getDefaultImageLoader();
+        CountingLoader loader = new CountingLoader();
+        GlideImageGetter.setDefaultImageLoader(loader);
+        try {
+            String html = "<img src=\"https://example.com/a.png\" width=\"400\" height=\"300\">" + longHtml();
+            mView.setText(html);
+            mFixture.layout();
+            int loads = loader.mLoads;
+            assertTrue(loads > 0);
+
+            // onViewRecycled, then the same item is bound again
+            mView.clear();
+            mView.setText(html);
+            mFixture.layout();
+            assertEquals(loads * 2, loader.mLoads);
+        } finally {
+            mView.clear();
+            GlideImageGetter.setDefaultImageLoader(original);
+        }
+    }
+
+    @Test
+    public void changedContentIsBound() {
+        mView.setText(longHtml());
+        mFixture.layout();
+        CharSequence bound = mTextView.getText();
+
+        mView.setText(longHtml() + "<br>new line");
+        assertNotSame(bound, mTextView.getText());
+        assertTrue(mTextView.getText().toString().endsWith("new line"));
+    }
+
+    @Test
+    public void changedCollapsedStateIsBound() {
+        SparseBooleanArray states = new SparseBooleanArray();
+        mView.setText(longHtml(), states, 0);
+        mFixture.layout();
+        CharSequence bound = mTextView.getText();
+
+        states.put(0, false);
+        mView.setText(longHtml(), states, 0);
+        assertNotSame(bound, mTextView.getText());
+        assertTrue(mView.isLayoutRequested());
+    }
+
+    @Test
+    public void changedWidthIsBound() {
+        mView.setText(longHtml());
+        mFixture.layout();
+        CharSequence bound = mTextView.getText();
+
+        mFixture.layout(320);
+        mView.setText(longHtml());
+        assertNotSame(bound, mTextView.getText());
+    }
+
+    private static String longHtml() {
+        StringBuilder html = new StringBuilder("start");
+        for (int i = 0; i < 10; i++) {
+            html.append("<br>line ").append(i);
+        }
+        return html.toString();
+    }
+
+    private static class CountingLoader implements ImageLoader {
+        int mLoads;
+
+        @Override
+        public void load(@NonNull Context context, @NonNull ImageRequest request, @NonNull Callback callback) {
+            mLoads++;
+        }
+
+        @Override
+        public void cancel(@NonNull Callback callback) {
+        }
+
+        @Override
+        public void setPriority(@NonNull Callback callback, int priority) {
+        }
+    }
+}
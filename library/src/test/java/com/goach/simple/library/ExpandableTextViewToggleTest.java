@@ -0,0 +1,167 @@
+package com.goach.simple.library;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
+import android.app.Activity;
+import android.content.Context;
+import android.view.View;
+import android.widget.TextView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.Scheduler;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Guards the expand/collapse toggle path: the animator is reused, a toggle allocates no more
+ * than the framework calls it can't avoid, and it leaves nothing posted behind.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ExpandableTextViewToggleTest {
+
+    private static final int WARMUP = 50;
+    private static final int ITERATIONS = 400;
+
+    /* Bytes per toggle allowed over the reference, well below a new animator or listener */
+    private static final long SLACK_BYTES = 256;
+
+    private ExpandableTextViewFixture mFixture;
+    private ExpandableTextView mView;
+    private TextView mToggle;
+
+    @Before
+    public void setUp() {
+        Context context = RuntimeEnvironment.application;
+        mFixture = new ExpandableTextViewFixture(context);
+        mView = mFixture.mView;
+        mToggle = mFixture.mToggle;
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            text.append("line ").append(i).append("<br>");
+        }
+        mView.setText(text);
+        mFixture.layout();
+        mToggle.setVisibility(View.VISIBLE);
+    }
+
+    @Test
+    public void toggleKeepsOneAnimatorAndListener() {
+        ValueAnimator animator = mView.getToggleAnimator();
+        for (int i = 0; i < 20; i++) {
+            mView.onClick(mToggle);
+            animator.end();
+        }
+        assertSame(animator, mView.getToggleAnimator());
+        assertEquals(1, animator.getListeners().size());
+    }
+
+    @Test
+    public void clipModeKeepsOneAnimatorAndListener() {
+        mView.setAnimationMode(ExpandableTextView.ANIM_MODE_CLIP);
+        ValueAnimator animator = mView.getToggleAnimator();
+        for (int i = 0; i < 20; i++) {
+            mView.onClick(mToggle);
+            animator.end();
+        }
+        assertSame(animator, mView.getToggleAnimator());
+        assertEquals(1, animator.getListeners().size());
+        assertEquals(0f, mToggle.getTranslationY(), 0f);
+    }
+
+    @Test
+    public void toggleAllocatesNoMoreThanTheFrameworkCalls() {
+        final ValueAnimator animator = mView.getToggleAnimator();
+        long toggleBytes = bytesPerRun(new Runnable() {
+            @Override
+            public void run() {
+                mView.onClick(mToggle);
+                animator.end();
+            }
+        });
+
+        // what a toggle can't avoid: run an animator with the same listeners and swap the label
+        final ValueAnimator reference = ValueAnimator.ofFloat(0f, 1f);
+        reference.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+            @Override
+            public void onAnimationUpdate(ValueAnimator animation) {
+                mView.requestLayout();
+            }
+        });
+        reference.addListener(new AnimatorListenerAdapter() {
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                mView.requestLayout();
+            }
+        });
+        final CharSequence[] labels = {"expand", "collapse"};
+        final int[] count = new int[1];
+        long referenceBytes = bytesPerRun(new Runnable() {
+            @Override
+            public void run() {
+                mToggle.setText(labels[count[0]++ & 1]);
+                reference.start();
+                reference.end();
+            }
+        });
+
+        if (toggleBytes >= 0 && referenceBytes >= 0) {
+            assertTrue("toggle " + toggleBytes + "B, reference " + referenceBytes + "B",
+                    toggleBytes <= referenceBytes + SLACK_BYTES);
+        }
+    }
+
+    @Test
+    public void toggleLeavesNothingPosted() {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        activity.setContentView(mView);
+        ShadowLooper.pauseMainLooper();
+        Scheduler scheduler = ShadowLooper.getShadowMainLooper().getScheduler();
+        ValueAnimator animator = mView.getToggleAnimator();
+        for (int i = 0; i < 10; i++) {
+            mView.onClick(mToggle);
+            animator.end();
+        }
+        int pending = scheduler.size();
+        for (int i = 0; i < 100; i++) {
+            mView.onClick(mToggle);
+            animator.end();
+        }
+        assertEquals(pending, scheduler.size());
+    }
+
+    /**
+     * @return the bytes allocated per run after a warmup, -1 if the JVM can't count them
+     */
+    private static long bytesPerRun(Runnable runnable) {
+        for (int i = 0; i < WARMUP; i++) {
+            runnable.run();
+        }
+        long before = allocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            runnable.run();
+        }
+        long after = allocatedBytes();
+        return before < 0 ? -1 : (after - before) / ITERATIONS;
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
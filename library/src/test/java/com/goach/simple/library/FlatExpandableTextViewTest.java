@@ -0,0 +1,68 @@
+package com.goach.simple.library;
+
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class FlatExpandableTextViewTest {
+
+    private FlatExpandableTextView mView;
+
+    @Before
+    public void setUp() {
+        mView = new FlatExpandableTextView(RuntimeEnvironment.application);
+    }
+
+    @Test
+    public void shortTextIsNotToggled() {
+        mView.setText("short");
+        layout();
+        int height = mView.getHeight();
+        mView.onClick(mView);
+        layout();
+        assertTrue(mView.isCollapsed());
+        assertEquals(height, mView.getHeight());
+    }
+
+    @Test
+    public void expandingShowsAllLines() {
+        StringBuilder html = new StringBuilder("line");
+        for (int i = 0; i < 10; i++) {
+            html.append("<br>line ").append(i);
+        }
+        mView.setText(html);
+        layout();
+        int collapsedHeight = mView.getHeight();
+
+        mView.onClick(mView);
+        endAnimation();
+        layout();
+        assertFalse(mView.isCollapsed());
+        assertTrue(mView.getHeight() > collapsedHeight);
+
+        mView.onClick(mView);
+        endAnimation();
+        layout();
+        assertTrue(mView.isCollapsed());
+        assertEquals(collapsedHeight, mView.getHeight());
+    }
+
+    private void endAnimation() {
+        mView.getToggleAnimator().end();
+    }
+
+    private void layout() {
+        mView.measure(View.MeasureSpec.makeMeasureSpec(480, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        mView.layout(0, 0, mView.getMeasuredWidth(), mView.getMeasuredHeight());
+    }
+}
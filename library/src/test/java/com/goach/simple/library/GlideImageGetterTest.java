@@ -0,0 +1,203 @@
+package com.goach.simple.library;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.drawable.Animatable;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.widget.TextView;
+
+import com.goach.simple.library.image.ImageLoader;
+import com.goach.simple.library.image.ImageRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class GlideImageGetterTest {
+
+    private Context mContext;
+    private FakeLoader mLoader;
+    private final List<GlideImageGetter> mGetters = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mLoader = new FakeLoader();
+    }
+
+    @After
+    public void tearDown() {
+        for (GlideImageGetter getter : mGetters) {
+            getter.clear();
+        }
+        GlideImageGetter.setMaxRunningAnimations(4);
+    }
+
+    @Test
+    public void requestsTheHeightOfTheAspectRatio() {
+        newGetter(200).bind(HtmlParser.parse("<img src=\"https://example.com/a.png\" width=\"400\" height=\"300\">"));
+        ImageRequest request = mLoader.mRequests.get(0);
+        assertEquals(200, request.getWidth());
+        assertEquals(150, request.getHeight());
+    }
+
+    @Test
+    public void requestsASquareWithoutAspectRatio() {
+        newGetter(200).bind(HtmlParser.parse("<img src=\"https://example.com/a.png\">"));
+        ImageRequest request = mLoader.mRequests.get(0);
+        assertEquals(200, request.getWidth());
+        assertEquals(200, request.getHeight());
+    }
+
+    @Test
+    public void capsRunningAnimations() {
+        GlideImageGetter.setMaxRunningAnimations(1);
+        AnimatedDrawable first = bindAnimated(newGetter(100));
+        AnimatedDrawable second = bindAnimated(newGetter(100));
+
+        assertTrue(first.isRunning());
+        assertFalse(second.isRunning());
+        assertEquals(1, GlideImageGetter.getRunningAnimationCount());
+    }
+
+    @Test
+    public void detachHandsTheSlotToAWaitingAnimation() {
+        GlideImageGetter.setMaxRunningAnimations(1);
+        GlideImageGetter firstGetter = newGetter(100);
+        AnimatedDrawable first = bindAnimated(firstGetter);
+        AnimatedDrawable second = bindAnimated(newGetter(100));
+
+        firstGetter.onDetached();
+        assertFalse(first.isRunning());
+        assertTrue(second.isRunning());
+        assertEquals(1, GlideImageGetter.getRunningAnimationCount());
+    }
+
+    @Test
+    public void hiddenAnimationPausesAndFreesItsSlot() {
+        GlideImageGetter.setMaxRunningAnimations(1);
+        GlideImageGetter firstGetter = newGetter(100);
+        AnimatedDrawable first = bindAnimated(firstGetter);
+        GlideImageGetter secondGetter = newGetter(100);
+        AnimatedDrawable second = bindAnimated(secondGetter);
+
+        // collapsed above the image
+        firstGetter.setVisibleTextEnd(1);
+        assertFalse(first.isRunning());
+        assertTrue(second.isRunning());
+
+        // visible again, it waits for the slot
+        firstGetter.setVisibleTextEnd(Integer.MAX_VALUE);
+        assertFalse(first.isRunning());
+        secondGetter.setVisibleTextEnd(1);
+        assertTrue(first.isRunning());
+        assertFalse(second.isRunning());
+    }
+
+    @Test
+    public void raisedCapStartsWaitingAnimations() {
+        GlideImageGetter.setMaxRunningAnimations(1);
+        bindAnimated(newGetter(100));
+        AnimatedDrawable second = bindAnimated(newGetter(100));
+
+        GlideImageGetter.setMaxRunningAnimations(2);
+        assertTrue(second.isRunning());
+        assertEquals(2, GlideImageGetter.getRunningAnimationCount());
+    }
+
+    /**
+     * Binds an image to an attached getter and delivers an animated drawable
+     */
+    private AnimatedDrawable bindAnimated(GlideImageGetter getter) {
+        getter.onAttached();
+        getter.bind(HtmlParser.parse("text<img src=\"https://example.com/a.gif\">"));
+        AnimatedDrawable drawable = new AnimatedDrawable();
+        mLoader.deliverAll(drawable);
+        return drawable;
+    }
+
+    private GlideImageGetter newGetter(int width) {
+        GlideImageGetter getter = new GlideImageGetter(mContext, new TextView(mContext), width);
+        getter.setImageLoader(mLoader);
+        mGetters.add(getter);
+        return getter;
+    }
+
+    private static BitmapDrawable newImage() {
+        Bitmap bitmap = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+        return new BitmapDrawable(RuntimeEnvironment.application.getResources(), bitmap);
+    }
+
+    private static class FakeLoader implements ImageLoader {
+        final List<ImageRequest> mRequests = new ArrayList<>();
+        final List<Callback> mPending = new ArrayList<>();
+
+        @Override
+        public void load(@NonNull Context context, @NonNull ImageRequest request, @NonNull Callback callback) {
+            mRequests.add(request);
+            mPending.add(callback);
+        }
+
+        @Override
+        public void cancel(@NonNull Callback callback) {
+            int index = mPending.indexOf(callback);
+            if (index >= 0) {
+                mPending.remove(index);
+            }
+        }
+
+        @Override
+        public void setPriority(@NonNull Callback callback, int priority) {
+        }
+
+        void deliverAll() {
+            deliverAll(newImage());
+        }
+
+        void deliverAll(Drawable drawable) {
+            List<Callback> pending = new ArrayList<>(mPending);
+            mPending.clear();
+            for (Callback callback : pending) {
+                callback.onResourceReady(drawable);
+            }
+        }
+    }
+
+    private static class AnimatedDrawable extends ColorDrawable implements Animatable {
+        private boolean mRunning;
+
+        AnimatedDrawable() {
+            super(Color.RED);
+        }
+
+        @Override
+        public void start() {
+            mRunning = true;
+        }
+
+        @Override
+        public void stop() {
+            mRunning = false;
+        }
+
+        @Override
+        public boolean isRunning() {
+            return mRunning;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.goach.simple.library;
+
+import android.app.Activity;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.support.annotation.NonNull;
+import android.widget.TextView;
+
+import com.goach.simple.library.image.ImageLoader;
+import com.goach.simple.library.image.ImageRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ImageMemoryBudgetTest {
+
+    private Context mContext;
+    private FakeLoader mLoader;
+    private long mOriginalMaxBytes;
+    /* The bytes of one delivered image */
+    private long mImageBytes;
+    private final List<GlideImageGetter> mGetters = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mLoader = new FakeLoader();
+        mOriginalMaxBytes = ImageMemoryBudget.getInstance().getMaxBytes();
+        mImageBytes = ImageMemoryBudget.sizeOf(newImage());
+        assertTrue(mImageBytes > 0);
+    }
+
+    @After
+    public void tearDown() {
+        for (GlideImageGetter getter : mGetters) {
+            getter.clear();
+        }
+        ImageMemoryBudget.getInstance().setMaxBytes(mOriginalMaxBytes);
+    }
+
+    @Test
+    public void accountsShownImages() {
+        ImageMemoryBudget budget = ImageMemoryBudget.getInstance();
+        budget.setMaxBytes(0);
+        long used = budget.getUsedBytes();
+        GlideImageGetter getter = bindImage();
+        mLoader.deliverAll();
+        assertEquals(mImageBytes, getter.getByteCount());
+        assertEquals(used + mImageBytes, budget.getUsedBytes());
+
+        getter.clear();
+        assertEquals(0, getter.getByteCount());
+        assertEquals(used, budget.getUsedBytes());
+    }
+
+    @Test
+    public void evictsDetachedViewsOverBudget() {
+        ImageMemoryBudget budget = ImageMemoryBudget.getInstance();
+        budget.setMaxBytes(budget.getUsedBytes() + mImageBytes * 3 / 2);
+        int evictions = budget.getEvictionCount();
+
+        GlideImageGetter first = bindImage();
+        mLoader.deliverAll();
+        GlideImageGetter second = bindImage();
+        mLoader.deliverAll();
+
+        assertEquals(0, first.getByteCount());
+        assertEquals(mImageBytes, second.getByteCount());
+        assertEquals(evictions + 1, budget.getEvictionCount());
+
+        // a draw doesn't reload a detached view, attaching it does
+        int loads = mLoader.mLoads.size();
+        first.onDraw();
+        assertEquals(loads, mLoader.mLoads.size());
+        first.onAttached();
+        assertEquals(loads + 1, mLoader.mLoads.size());
+    }
+
+    @Test
+    public void evictedImagesReloadAfterTheDraw() {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        TextView textView = new TextView(activity);
+        activity.setContentView(textView);
+        GlideImageGetter getter = bindImage(textView);
+        mLoader.deliverAll();
+        getter.evict();
+        assertEquals(0, getter.getByteCount());
+
+        ShadowLooper.pauseMainLooper();
+        int loads = mLoader.mLoads.size();
+        getter.onDraw();
+        getter.onDraw();
+        assertEquals(loads, mLoader.mLoads.size());
+        ShadowLooper.runUiThreadTasks();
+        assertEquals(loads + 1, mLoader.mLoads.size());
+    }
+
+    private GlideImageGetter bindImage() {
+        return bindImage(new TextView(mContext));
+    }
+
+    private GlideImageGetter bindImage(TextView textView) {
+        GlideImageGetter getter = new GlideImageGetter(mContext, textView, 100);
+        getter.setImageLoader(mLoader);
+        getter.bind(HtmlParser.parse("text<img src=\"https://example.com/a.png\">"));
+        mGetters.add(getter);
+        return getter;
+    }
+
+    private static BitmapDrawable newImage() {
+        Bitmap bitmap = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+        return new BitmapDrawable(RuntimeEnvironment.application.getResources(), bitmap);
+    }
+
+    private static class FakeLoader implements ImageLoader {
+        final List<Callback> mLoads = new ArrayList<>();
+        final List<Callback> mPending = new ArrayList<>();
+
+        @Override
+        public void load(@NonNull Context context, @NonNull ImageRequest request, @NonNull Callback callback) {
+            mLoads.add(callback);
+            mPending.add(callback);
+        }
+
+        @Override
+        public void cancel(@NonNull Callback callback) {
+            mPending.remove(callback);
+        }
+
+        @Override
+        public void setPriority(@NonNull Callback callback, int priority) {
+        }
+
+        void deliverAll() {
+            List<Callback> pending = new ArrayList<>(mPending);
+            mPending.clear();
+            for (Callback callback : pending) {
+                callback.onResourceReady(newImage());
+            }
+        }
+    }
+}
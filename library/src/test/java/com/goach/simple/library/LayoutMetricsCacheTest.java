@@ -0,0 +1,77 @@
+package com.goach.simple.library;
+
+import android.graphics.Typeface;
+import android.text.TextPaint;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class LayoutMetricsCacheTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void styleHashCoversFontLocaleAndBreakStrategy() {
+        TextPaint paint = new TextPaint();
+        paint.setTextSize(40f);
+        int hash = LayoutMetricsCache.styleHash(paint, 1f, 0f, true, 0, 0);
+        assertEquals(hash, LayoutMetricsCache.styleHash(new TextPaint(paint), 1f, 0f, true, 0, 0));
+
+        assertNotEquals(hash, LayoutMetricsCache.styleHash(paint, 1f, 0f, true, 1, 0));
+        assertNotEquals(hash, LayoutMetricsCache.styleHash(paint, 1f, 0f, true, 0, 1));
+
+        TextPaint serif = new TextPaint(paint);
+        serif.setTypeface(Typeface.SERIF);
+        TextPaint monospace = new TextPaint(paint);
+        monospace.setTypeface(Typeface.MONOSPACE);
+        assertNotEquals(LayoutMetricsCache.styleHash(serif, 1f, 0f, true),
+                LayoutMetricsCache.styleHash(monospace, 1f, 0f, true));
+
+        TextPaint japanese = new TextPaint(paint);
+        japanese.setTextLocale(Locale.JAPANESE);
+        TextPaint english = new TextPaint(paint);
+        english.setTextLocale(Locale.ENGLISH);
+        assertNotEquals(LayoutMetricsCache.styleHash(japanese, 1f, 0f, true),
+                LayoutMetricsCache.styleHash(english, 1f, 0f, true));
+    }
+
+    @Test
+    public void onlySystemFontsArePersistable() {
+        TextPaint paint = new TextPaint();
+        assertTrue(LayoutMetricsCache.hasStableTypeface(paint));
+        paint.setTypeface(Typeface.MONOSPACE);
+        assertTrue(LayoutMetricsCache.hasStableTypeface(paint));
+        paint.setTypeface(Typeface.create(Typeface.SERIF, Typeface.ITALIC));
+        assertFalse(LayoutMetricsCache.hasStableTypeface(paint));
+    }
+
+    @Test
+    public void keysOfCustomFontsStayOffDisk() {
+        DiskLayoutMetricsCache disk = new DiskLayoutMetricsCache(new File(mFolder.getRoot(), "metrics"), 42L, 100);
+        LayoutMetricsCache.setDiskCache(disk);
+        try {
+            LayoutMetricsCache memory = new LayoutMetricsCache(10);
+            LayoutMetricsCache.Key stable = new LayoutMetricsCache.Key(1L, 480, 7, 2, true);
+            LayoutMetricsCache.Key custom = new LayoutMetricsCache.Key(2L, 480, 7, 2, false);
+            memory.putMetrics(stable, new LayoutMetrics(3, 30, 20, 2));
+            memory.putMetrics(custom, new LayoutMetrics(3, 30, 20, 2));
+            assertNotNull(memory.get(custom));
+            assertNotNull(disk.get(stable));
+            assertNull(disk.get(custom));
+        } finally {
+            LayoutMetricsCache.setDiskCache(null);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.goach.simple.library;
+
+import android.text.Html;
+import android.text.Spanned;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the allocations of LiteHtmlParser and Html.fromHtml on a feed-like post.
+ * Timings on a shared machine are too noisy to assert, so they are only reported.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class LiteHtmlParserAllocationTest {
+
+    private static final int WARMUP = 50;
+    private static final int ITERATIONS = 200;
+
+    @Test
+    public void allocatesLessThanFromHtml() {
+        final String html = samplePost();
+        assertNotNull(LiteHtmlParser.parse(html));
+
+        Runnable lite = new Runnable() {
+            @Override
+            public void run() {
+                LiteHtmlParser.parse(html);
+            }
+        };
+        Runnable framework = new Runnable() {
+            @Override
+            public void run() {
+                Html.fromHtml(html, new LiteHtmlParserTest.PlaceholderGetter(), null);
+            }
+        };
+        long liteBytes = bytesPerRun(lite);
+        long frameworkBytes = bytesPerRun(framework);
+        if (liteBytes >= 0 && frameworkBytes >= 0) {
+            assertTrue("LiteHtmlParser " + liteBytes + "B, Html.fromHtml " + frameworkBytes + "B per parse",
+                    liteBytes < frameworkBytes);
+        }
+    }
+
+    /**
+     * Reports the parse time of both parsers over the supported corpus and the sample post,
+     * without asserting on them
+     */
+    @Test
+    public void reportsParseTimes() {
+        final String[] corpus = new String[LiteHtmlParserTest.SUPPORTED.length + 1];
+        System.arraycopy(LiteHtmlParserTest.SUPPORTED, 0, corpus, 0, LiteHtmlParserTest.SUPPORTED.length);
+        corpus[corpus.length - 1] = samplePost();
+        final Html.ImageGetter getter = new LiteHtmlParserTest.PlaceholderGetter();
+
+        long liteNanos = nanosPerRun(new Runnable() {
+            @Override
+            public void run() {
+                for (String html : corpus) {
+                    LiteHtmlParser.parse(html);
+                }
+            }
+        });
+        long frameworkNanos = nanosPerRun(new Runnable() {
+            @Override
+            public void run() {
+                for (String html : corpus) {
+                    Html.fromHtml(html, getter, null);
+                }
+            }
+        });
+        System.out.println("Parse time over " + corpus.length + " inputs: LiteHtmlParser "
+                + liteNanos / 1000 + "us, Html.fromHtml " + frameworkNanos / 1000 + "us");
+    }
+
+    private static long nanosPerRun(Runnable parse) {
+        for (int i = 0; i < WARMUP; i++) {
+            parse.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            parse.run();
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    /**
+     * @return the bytes allocated per run after a warmup, -1 if the JVM can't count them
+     */
+    private static long bytesPerRun(Runnable parse) {
+        for (int i = 0; i < WARMUP; i++) {
+            parse.run();
+        }
+        long before = allocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            parse.run();
+        }
+        long after = allocatedBytes();
+        return before < 0 ? -1 : (after - before) / ITERATIONS;
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static String samplePost() {
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            html.append("<p>Paragraph ").append(i).append(" with <b>bold</b>, <i>italic</i> and ")
+                    .append("<a href=\"https://example.com/post/").append(i).append("?a=1&amp;b=2\">a link</a>.")
+                    .append("<br>Second line &nbsp; with <font color=\"#336699\">color</font>.</p>");
+            if (i % 10 == 0) {
+                html.append("<p><img src=\"https://example.com/").append(i).append(".png\" width=\"640\" height=\"480\"></p>");
+            }
+        }
+        return html.toString();
+    }
+}
@@ -0,0 +1,170 @@
+package com.goach.simple.library;
+
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.text.Html;
+import android.text.Spanned;
+import android.text.style.ForegroundColorSpan;
+import android.text.style.ImageSpan;
+import android.text.style.StyleSpan;
+import android.text.style.URLSpan;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class LiteHtmlParserTest {
+
+    static final String[] SUPPORTED = {
+            "plain text",
+            "  leading and   collapsed\n\n spaces  ",
+            "tab\tkept",
+            "<b>bold</b> <strong>strong</strong> <i>italic</i> <em>em</em> <u>underline</u>",
+            "<B>upper</B> <b >spaced</b >",
+            "<b>nested <i>styles <u>here</u></i> end</b>",
+            "<b>empty</b><i></i><u></u>",
+            "<a href=\"https://example.com/?a=1&amp;b=2\">link</a> <a>no href</a>",
+            "<a href='single'>quoted</a> <a href=unquoted>bare</a>",
+            "line<br>break<br/>again<br />done",
+            "<p>first</p><p>second</p>third",
+            "<p>  padded  </p>\n\n<p>next</p>",
+            "<br><br><p>after breaks</p>",
+            "text<p>unclosed paragraph",
+            "<b>unclosed bold <i>and italic",
+            "<font color=\"#ff0000\">red</font> <font color='#00FF00'>green</font> <font>none</font>",
+            "&amp; &lt; &gt; &quot; &nbsp; &#65;&#x42;&#169;",
+            "emoji &#128512; done",
+            "<img src=\"https://example.com/a.png\">",
+            "before<img src=\"a.png\" width=\"120\" height=\"80px\"/>after <img src='b.png' alt=\"x\">",
+            "<p><img src=\"a.png\"></p><p>caption <b>bold</b></p>",
+            "<!-- comment -->visible<!--another-->",
+            "<a href=\"u\"><img src=\"a.png\"></a>",
+    };
+
+    private static final String[] UNSUPPORTED = {
+            "<div>block</div>",
+            "<span style=\"color:red\">styled</span>",
+            "<p style=\"text-align:center\">centered</p>",
+            "<font color=\"red\">named</font>",
+            "<font face=\"serif\">face</font>",
+            "<b><i>crossed</b></i>",
+            "<b><p>paragraph in bold</p></b>",
+            "a < b",
+            "a > b",
+            "&copy; unknown entity",
+            "stray & ampersand",
+            "windows&#150;1252",
+            "line\r\nbreak",
+            "<!DOCTYPE html>text",
+            "<b/>",
+            "</b>",
+    };
+
+    @Test
+    public void matchesHtmlFromHtml() {
+        for (String html : SUPPORTED) {
+            Spanned lite = LiteHtmlParser.parse(html);
+            assertNotNull(html, lite);
+            Spanned expected = Html.fromHtml(html, new PlaceholderGetter(), null);
+            assertEquals(html, expected.toString(), lite.toString());
+            assertEquals(html, describeSpans(expected), describeSpans(lite));
+        }
+    }
+
+    @Test
+    public void fallsBackOnUnsupportedInput() {
+        for (String html : UNSUPPORTED) {
+            assertNull(html, LiteHtmlParser.parse(html));
+        }
+    }
+
+    @Test
+    public void readsImageSize() {
+        Spanned lite = LiteHtmlParser.parse("<img src=\"a.png\" width=\"120\" height=\"80px\">");
+        ImageSpan[] spans = lite.getSpans(0, lite.length(), ImageSpan.class);
+        assertEquals(1, spans.length);
+        assertEquals("a.png", spans[0].getSource());
+        HtmlParser.ImagePlaceholder placeholder = (HtmlParser.ImagePlaceholder) spans[0].getDrawable();
+        assertEquals(120, placeholder.getIntrinsicWidth());
+        assertEquals(80, placeholder.getIntrinsicHeight());
+    }
+
+    @Test
+    public void parsesPrefix() {
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            html.append("<p>paragraph <b>").append(i).append("</b></p>");
+        }
+        Spanned full = LiteHtmlParser.parse(html);
+        HtmlParser.Preview preview = LiteHtmlParser.parsePrefix(html, 100);
+        assertTrue(preview.isTruncated());
+        String prefix = preview.getParsed().toString();
+        assertTrue(prefix.length() >= 100 && prefix.length() < 120);
+        assertTrue(full.toString().startsWith(prefix));
+        for (StyleSpan span : preview.getParsed().getSpans(0, prefix.length(), StyleSpan.class)) {
+            assertTrue(preview.getParsed().getSpanEnd(span) <= prefix.length());
+        }
+
+        HtmlParser.Preview whole = LiteHtmlParser.parsePrefix("<b>short</b>", 100);
+        assertFalse(whole.isTruncated());
+        assertEquals("short", whole.getParsed().toString());
+    }
+
+    @Test
+    public void parsePreviewFallsBackToFullParse() {
+        StringBuilder html = new StringBuilder("<div>unsupported</div>");
+        for (int i = 0; i < 100; i++) {
+            html.append("more text ");
+        }
+        HtmlParser.Preview preview = HtmlParser.parsePreview(html, 50);
+        assertFalse(preview.isTruncated());
+        assertTrue(preview.getParsed().toString().trim().endsWith("more text"));
+    }
+
+    @Test
+    public void parsesCharSequenceWithoutCopy() {
+        StringBuilder html = new StringBuilder("<b>built</b>");
+        Spanned lite = LiteHtmlParser.parse(html);
+        assertEquals("built", lite.toString());
+    }
+
+    /**
+     * @return the spans in a comparable form, sorted since the two parsers may store them in a different order
+     */
+    static List<String> describeSpans(Spanned text) {
+        List<String> result = new ArrayList<>();
+        for (Object span : text.getSpans(0, text.length(), Object.class)) {
+            String detail = "";
+            if (span instanceof StyleSpan) {
+                detail = String.valueOf(((StyleSpan) span).getStyle());
+            } else if (span instanceof URLSpan) {
+                detail = ((URLSpan) span).getURL();
+            } else if (span instanceof ForegroundColorSpan) {
+                detail = Integer.toHexString(((ForegroundColorSpan) span).getForegroundColor());
+            } else if (span instanceof ImageSpan) {
+                detail = ((ImageSpan) span).getSource();
+            }
+            result.add(span.getClass().getSimpleName() + "[" + text.getSpanStart(span) + ","
+                    + text.getSpanEnd(span) + "," + text.getSpanFlags(span) + "]" + detail);
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    static final class PlaceholderGetter implements Html.ImageGetter {
+        @Override
+        public Drawable getDrawable(String source) {
+            return new ColorDrawable(Color.TRANSPARENT);
+        }
+    }
+}
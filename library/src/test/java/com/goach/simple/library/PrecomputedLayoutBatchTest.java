@@ -0,0 +1,138 @@
+package com.goach.simple.library;
+
+import android.os.AsyncTask;
+import android.support.annotation.NonNull;
+import android.widget.TextView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class PrecomputedLayoutBatchTest {
+
+    private ExecutorService mExecutor;
+    private PrecomputedLayout.Params mParams;
+
+    @Before
+    public void setUp() {
+        mExecutor = Executors.newFixedThreadPool(4);
+        PrecomputedLayout.setExecutor(mExecutor);
+        mParams = new PrecomputedLayout.Params(new TextView(RuntimeEnvironment.application), 480, 2);
+    }
+
+    @After
+    public void tearDown() {
+        PrecomputedLayout.setExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void layoutsFollowTheOrderOfTheSources() {
+        List<String> sources = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            sources.add(lines(i % 5 + 1));
+        }
+        List<PrecomputedLayout> layouts = PrecomputedLayout.createAll(sources, mParams);
+        assertEquals(sources.size(), layouts.size());
+        for (int i = 0; i < sources.size(); i++) {
+            PrecomputedLayout layout = layouts.get(i);
+            assertEquals(sources.get(i), layout.getSource());
+            LayoutMetrics expected = PrecomputedLayout.create(sources.get(i), mParams).getMetrics();
+            assertNotNull(layout.getMetrics());
+            assertEquals(expected.getLineCount(), layout.getMetrics().getLineCount());
+            assertEquals(expected.getFullHeight(), layout.getMetrics().getFullHeight());
+            assertEquals(expected.getCollapsedHeight(), layout.getMetrics().getCollapsedHeight());
+            assertEquals(i % 5 + 1 > 2, layout.getMetrics().isToggleVisible());
+        }
+    }
+
+    @Test
+    public void emptySourcesHaveNoMetrics() {
+        List<String> sources = new ArrayList<>();
+        sources.add("");
+        sources.add(lines(3));
+        List<PrecomputedLayout> layouts = PrecomputedLayout.createAll(sources, mParams);
+        assertNull(layouts.get(0).getMetrics());
+        assertTrue(layouts.get(1).getMetrics().isToggleVisible());
+    }
+
+    @Test
+    public void nothingToDoForNoSources() {
+        assertTrue(PrecomputedLayout.createAll(new ArrayList<String>(), mParams).isEmpty());
+    }
+
+    @Test
+    public void asyncFailureIsDelivered() {
+        PrecomputedLayout.setExecutor(new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                command.run();
+            }
+        });
+        List<CharSequence> sources = new ArrayList<>();
+        sources.add(lines(3));
+        sources.add(new BrokenSource());
+        final List<RuntimeException> errors = new ArrayList<>();
+        PrecomputedLayout.createAllAsync(sources, mParams, new PrecomputedLayout.BatchCallback() {
+            @Override
+            public void onCreated(@NonNull List<PrecomputedLayout> layouts) {
+                fail("a source failed");
+            }
+
+            @Override
+            public void onFailed(@NonNull RuntimeException error) {
+                errors.add(error);
+            }
+        });
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0) instanceof IllegalStateException);
+    }
+
+    /**
+     * A source that can't be read
+     */
+    private static class BrokenSource implements CharSequence {
+        @Override
+        public int length() {
+            return 10;
+        }
+
+        @Override
+        public char charAt(int index) {
+            throw new IllegalStateException();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            throw new IllegalStateException();
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static String lines(int count) {
+        StringBuilder html = new StringBuilder("line 0");
+        for (int i = 1; i < count; i++) {
+            html.append("<br>line ").append(i);
+        }
+        return html.toString();
+    }
+}
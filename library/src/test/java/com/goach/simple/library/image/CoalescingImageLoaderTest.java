@@ -0,0 +1,172 @@
+package com.goach.simple.library.image;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class CoalescingImageLoaderTest {
+
+    private static final String URL = "https://example.com/a.png";
+
+    private Context mContext;
+    private FakeLoader mDelegate;
+    private CoalescingImageLoader mLoader;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mDelegate = new FakeLoader();
+        mLoader = new CoalescingImageLoader(mDelegate);
+    }
+
+    @Test
+    public void identicalRequestsLoadOnce() {
+        RecordingCallback first = new RecordingCallback();
+        RecordingCallback second = new RecordingCallback();
+        mLoader.load(mContext, request(300), first);
+        mLoader.load(mContext, request(300), second);
+        assertEquals(1, mDelegate.mLoads.size());
+        assertEquals(1, mLoader.getCoalescedCount());
+
+        mDelegate.deliver(0, new ColorDrawable(Color.RED));
+        assertNotNull(first.mResource);
+        assertNotNull(second.mResource);
+        assertNotSame(first.mResource, second.mResource);
+    }
+
+    @Test
+    public void lateSubscriberGetsLoadedResource() {
+        RecordingCallback first = new RecordingCallback();
+        mLoader.load(mContext, request(300), first);
+        mDelegate.deliver(0, new ColorDrawable(Color.RED));
+
+        RecordingCallback late = new RecordingCallback();
+        mLoader.load(mContext, request(300), late);
+        assertEquals(1, mDelegate.mLoads.size());
+        assertNotNull(late.mResource);
+        assertNotSame(first.mResource, late.mResource);
+    }
+
+    @Test
+    public void delegateCancelledAfterLastSubscriber() {
+        RecordingCallback first = new RecordingCallback();
+        RecordingCallback second = new RecordingCallback();
+        mLoader.load(mContext, request(300), first);
+        mLoader.load(mContext, request(300), second);
+
+        mLoader.cancel(first);
+        assertEquals(0, mDelegate.mCancels);
+        mLoader.cancel(second);
+        assertEquals(1, mDelegate.mCancels);
+
+        mLoader.load(mContext, request(300), first);
+        assertEquals(2, mDelegate.mLoads.size());
+    }
+
+    @Test
+    public void differentSizeLoadsSeparately() {
+        mLoader.load(mContext, request(300), new RecordingCallback());
+        mLoader.load(mContext, request(600), new RecordingCallback());
+        assertEquals(2, mDelegate.mLoads.size());
+        assertEquals(0, mLoader.getCoalescedCount());
+    }
+
+    @Test
+    public void sharedRequestRunsAtHighestPriority() {
+        RecordingCallback prefetch = new RecordingCallback();
+        RecordingCallback visible = new RecordingCallback();
+        mLoader.load(mContext, request(300, ImageRequest.PRIORITY_LOW), prefetch);
+        mLoader.load(mContext, request(300, ImageRequest.PRIORITY_HIGH), visible);
+        assertEquals(1, mDelegate.mPriorities.size());
+        assertEquals(ImageRequest.PRIORITY_HIGH, (int) mDelegate.mPriorities.get(0));
+
+        mLoader.cancel(visible);
+        assertEquals(ImageRequest.PRIORITY_LOW, (int) mDelegate.mPriorities.get(1));
+    }
+
+    @Test
+    public void failedRequestIsRetried() {
+        RecordingCallback callback = new RecordingCallback();
+        mLoader.load(mContext, request(300), callback);
+        mDelegate.mLoads.get(0).onLoadFailed(null);
+        assertTrue(callback.mFailed);
+
+        mLoader.load(mContext, request(300), new RecordingCallback());
+        assertEquals(2, mDelegate.mLoads.size());
+    }
+
+    private static ImageRequest request(int width) {
+        return request(width, ImageRequest.PRIORITY_HIGH);
+    }
+
+    private static ImageRequest request(int width, int priority) {
+        return new ImageRequest(URL, width, ImageRequest.SIZE_ORIGINAL, Bitmap.Config.ARGB_8888, priority);
+    }
+
+    private static class FakeLoader implements ImageLoader {
+        final List<Callback> mLoads = new ArrayList<>();
+        final List<Integer> mPriorities = new ArrayList<>();
+        int mCancels;
+
+        @Override
+        public void load(@NonNull Context context, @NonNull ImageRequest request, @NonNull Callback callback) {
+            mLoads.add(callback);
+        }
+
+        @Override
+        public void cancel(@NonNull Callback callback) {
+            mCancels++;
+        }
+
+        @Override
+        public void setPriority(@NonNull Callback callback, int priority) {
+            mPriorities.add(priority);
+        }
+
+        void deliver(int index, Drawable resource) {
+            mLoads.get(index).onResourceReady(resource);
+        }
+    }
+
+    private static class RecordingCallback implements ImageLoader.Callback {
+        Drawable mResource;
+        boolean mFailed;
+
+        @Override
+        public void onLoadStarted(@Nullable Drawable placeholder) {
+        }
+
+        @Override
+        public void onResourceReady(@NonNull Drawable resource) {
+            mResource = resource;
+        }
+
+        @Override
+        public void onLoadFailed(@Nullable Drawable errorDrawable) {
+            mFailed = true;
+        }
+
+        @Override
+        public void onLoadCleared(@Nullable Drawable placeholder) {
+            mResource = null;
+        }
+    }
+}
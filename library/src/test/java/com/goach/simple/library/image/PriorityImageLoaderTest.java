@@ -0,0 +1,148 @@
+package com.goach.simple.library.image;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class PriorityImageLoaderTest {
+
+    private Context mContext;
+    private FakeLoader mDelegate;
+    private PriorityImageLoader mLoader;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mDelegate = new FakeLoader();
+        mLoader = new PriorityImageLoader(mDelegate);
+        mLoader.setMaxConcurrentLoads(2);
+    }
+
+    @Test
+    public void capsConcurrentLoads() {
+        for (int i = 0; i < 5; i++) {
+            mLoader.load(mContext, request("a" + i, ImageRequest.PRIORITY_HIGH), new NoopCallback());
+        }
+        assertEquals(2, mLoader.getRunningCount());
+        assertEquals(3, mLoader.getQueuedCount());
+
+        mDelegate.mLoads.get(0).onResourceReady(new ColorDrawable(Color.RED));
+        assertEquals(2, mLoader.getRunningCount());
+        assertEquals(3, mDelegate.mLoads.size());
+    }
+
+    @Test
+    public void startsVisibleRequestsFirst() {
+        fillSlots();
+        mLoader.load(mContext, request("low", ImageRequest.PRIORITY_LOW), new NoopCallback());
+        mLoader.load(mContext, request("high", ImageRequest.PRIORITY_HIGH), new NoopCallback());
+        mLoader.load(mContext, request("newer", ImageRequest.PRIORITY_HIGH), new NoopCallback());
+
+        mDelegate.mLoads.get(0).onResourceReady(new ColorDrawable(Color.RED));
+        mDelegate.mLoads.get(1).onLoadFailed(null);
+        assertEquals("newer", mDelegate.mRequests.get(2).getUrl());
+        assertEquals("high", mDelegate.mRequests.get(3).getUrl());
+    }
+
+    @Test
+    public void raisedPriorityJumpsTheQueue() {
+        fillSlots();
+        NoopCallback prefetched = new NoopCallback();
+        mLoader.load(mContext, request("prefetched", ImageRequest.PRIORITY_LOW), prefetched);
+        mLoader.load(mContext, request("other", ImageRequest.PRIORITY_LOW), new NoopCallback());
+        mLoader.setPriority(prefetched, ImageRequest.PRIORITY_HIGH);
+
+        mDelegate.mLoads.get(0).onResourceReady(new ColorDrawable(Color.RED));
+        assertEquals("prefetched", mDelegate.mRequests.get(2).getUrl());
+    }
+
+    @Test
+    public void cancelledRequestsNeverStart() {
+        fillSlots();
+        NoopCallback recycled = new NoopCallback();
+        mLoader.load(mContext, request("recycled", ImageRequest.PRIORITY_HIGH), recycled);
+        mLoader.cancel(recycled);
+        assertEquals(0, mLoader.getQueuedCount());
+
+        mDelegate.mLoads.get(0).onResourceReady(new ColorDrawable(Color.RED));
+        assertEquals(2, mDelegate.mLoads.size());
+        assertEquals(0, mDelegate.mCancels);
+    }
+
+    @Test
+    public void cancellingRunningRequestFreesItsSlot() {
+        NoopCallback running = new NoopCallback();
+        mLoader.load(mContext, request("running", ImageRequest.PRIORITY_HIGH), running);
+        mLoader.load(mContext, request("b", ImageRequest.PRIORITY_HIGH), new NoopCallback());
+        mLoader.load(mContext, request("queued", ImageRequest.PRIORITY_HIGH), new NoopCallback());
+        mLoader.cancel(running);
+        assertEquals(1, mDelegate.mCancels);
+        assertEquals("queued", mDelegate.mRequests.get(2).getUrl());
+    }
+
+    private void fillSlots() {
+        mLoader.load(mContext, request("busy0", ImageRequest.PRIORITY_HIGH), new NoopCallback());
+        mLoader.load(mContext, request("busy1", ImageRequest.PRIORITY_HIGH), new NoopCallback());
+    }
+
+    private static ImageRequest request(String url, int priority) {
+        return new ImageRequest(url, 300, ImageRequest.SIZE_ORIGINAL, Bitmap.Config.ARGB_8888, priority);
+    }
+
+    private static class FakeLoader implements ImageLoader {
+        final List<Callback> mLoads = new ArrayList<>();
+        final List<ImageRequest> mRequests = new ArrayList<>();
+        int mCancels;
+
+        @Override
+        public void load(@NonNull Context context, @NonNull ImageRequest request, @NonNull Callback callback) {
+            mLoads.add(callback);
+            mRequests.add(request);
+        }
+
+        @Override
+        public void cancel(@NonNull Callback callback) {
+            mCancels++;
+        }
+
+        @Override
+        public void setPriority(@NonNull Callback callback, int priority) {
+        }
+    }
+
+    private static class NoopCallback implements ImageLoader.Callback {
+        @Override
+        public void onLoadStarted(@Nullable Drawable placeholder) {
+        }
+
+        @Override
+        public void onResourceReady(@NonNull Drawable resource) {
+        }
+
+        @Override
+        public void onLoadFailed(@Nullable Drawable errorDrawable) {
+        }
+
+        @Override
+        public void onLoadCleared(@Nullable Drawable placeholder) {
+        }
+    }
+}